@@ -1,9 +1,16 @@
 package io.hydrodevelopments.celesmq;
 
 import io.hydrodevelopments.celesmq.config.RabbitMQConfig;
+import io.hydrodevelopments.celesmq.connection.BrokerHealthMonitor;
+import io.hydrodevelopments.celesmq.connection.ConnectionHub;
 import io.hydrodevelopments.celesmq.connection.RabbitMQConnectionManager;
+import io.hydrodevelopments.celesmq.connection.SharedExecutors;
+import io.hydrodevelopments.celesmq.listener.BatchMessageListener;
 import io.hydrodevelopments.celesmq.listener.MessageListener;
+import io.hydrodevelopments.celesmq.metrics.BlockingWatchdog;
+import io.hydrodevelopments.celesmq.metrics.RabbitMQMetrics;
 import io.hydrodevelopments.celesmq.platform.SpigotPlatform;
+import io.hydrodevelopments.celesmq.messaging.HeaderMatch;
 import io.hydrodevelopments.celesmq.messaging.RabbitMQConsumer;
 import io.hydrodevelopments.celesmq.messaging.RabbitMQPublisher;
 import io.hydrodevelopments.celesmq.platform.Platform;
@@ -11,6 +18,8 @@ import org.bukkit.plugin.java.JavaPlugin;
 
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Main API class for RabbitMQ integration in Minecraft plugins This class provides a simple interface to interact with
@@ -18,9 +27,15 @@ import java.util.concurrent.CompletableFuture;
  */
 public class RabbitMQClient {
 
+  private final Platform platform;
   private final RabbitMQConnectionManager connectionManager;
   private final RabbitMQPublisher publisher;
   private final RabbitMQConsumer consumer;
+  private final boolean sharedConnection;
+  private final Executor asyncExecutor;
+  private final BlockingWatchdog watchdog;
+  // Whether this client gave its reference to a shared connection back, which it may only do once
+  private final AtomicBoolean released = new AtomicBoolean();
 
   /**
    * Creates a new RabbitMQ client instance for Spigot/Paper.
@@ -41,25 +56,58 @@ public class RabbitMQClient {
    * @param config   RabbitMQ configuration
    */
   public RabbitMQClient(Platform platform, RabbitMQConfig config) {
-    this.connectionManager = new RabbitMQConnectionManager(platform, config);
-    this.publisher = new RabbitMQPublisher(connectionManager);
-    this.consumer = new RabbitMQConsumer(connectionManager);
+    this.platform = platform;
+    this.sharedConnection = config.isSharedConnection();
+    this.connectionManager = sharedConnection
+      ? ConnectionHub.acquire(platform, config)
+      : new RabbitMQConnectionManager(platform, config);
+    this.watchdog = config.getMainThreadWatchdogThreshold() > 0
+      ? new BlockingWatchdog(platform, config.getMainThreadWatchdogThreshold())
+      : null;
+    this.publisher = new RabbitMQPublisher(connectionManager, platform, config, watchdog);
+    this.consumer = new RabbitMQConsumer(connectionManager, platform, config, watchdog);
+    this.asyncExecutor = SharedExecutors.asyncExecutor(config, platform);
   }
 
   /**
    * Connects to the RabbitMQ server
+   * With a shared connection this reuses the connection if another client already opened it. A client that released
+   * its shared connection cannot connect again, create a new client instead.
    *
    * @return true if connection successful, false otherwise
    */
   public boolean connect() {
-    return connectionManager.connect();
+    if (!sharedConnection) {
+      return connectionManager.connect();
+    }
+    if (released.get()) {
+      platform.getLogger().warning("Cannot reconnect a client that released its shared connection, "
+        + "create a new client");
+      return false;
+    }
+    return ConnectionHub.connect(connectionManager);
   }
 
   /**
    * Disconnects from the RabbitMQ server
+   * With a shared connection only this client's subscriptions are closed, the connection closes with its last client.
+   * Calling it again does nothing, so the shared connection is released only once.
    */
   public void disconnect() {
-    connectionManager.disconnect();
+    if (sharedConnection && !released.compareAndSet(false, true)) {
+      return;
+    }
+    publisher.close();
+    consumer.close();
+    if (watchdog != null) {
+      watchdog.stop();
+    }
+    platform.stopLoadMonitor();
+    if (sharedConnection) {
+      ConnectionHub.release(connectionManager);
+    } else {
+      connectionManager.disconnect();
+    }
   }
 
   /**
@@ -71,6 +119,15 @@ public class RabbitMQClient {
     return connectionManager.isConnected();
   }
 
+  /**
+   * Checks if the broker has blocked the connection (memory or disk alarm)
+   *
+   * @return true if blocked, false otherwise
+   */
+  public boolean isBlocked() {
+    return connectionManager.isBlocked();
+  }
+
   // ========== Publishing Methods ==========
 
   /**
@@ -147,6 +204,19 @@ public class RabbitMQClient {
     return publisher.publishWithHeaders(exchangeName, routingKey, message, headers);
   }
 
+  /**
+   * Publishes a message with headers to a headers exchange, reaching consumers whose header match it satisfies
+   *
+   * @param exchangeName name of the headers exchange
+   * @param message      message content
+   * @param headers      headers matched by subscriptions
+   *
+   * @return CompletableFuture indicating success/failure
+   */
+  public CompletableFuture<Boolean> publishToHeaders(String exchangeName, String message, Map<String, Object> headers) {
+    return publisher.publishWithHeaders(exchangeName, "", message, headers, "headers");
+  }
+
   /**
    * Broadcasts a message to all consumers (fanout pattern)
    *
@@ -200,6 +270,20 @@ public class RabbitMQClient {
     return consumer.consume(queueName, listener, autoAck, syncToMainThread);
   }
 
+  /**
+   * Starts consuming messages from a queue in batches, each batch is acknowledged as a whole
+   *
+   * @param queueName name of the queue to consume from
+   * @param listener  callback for handling batches
+   * @param batchSize maximum number of messages per batch
+   * @param maxWaitMs maximum time in milliseconds a message waits for its batch to fill
+   *
+   * @return true if consumer started successfully
+   */
+  public boolean consumeBatch(String queueName, BatchMessageListener listener, int batchSize, long maxWaitMs) {
+    return consumer.consumeBatch(queueName, listener, batchSize, maxWaitMs);
+  }
+
   /**
    * Subscribes to a broadcast exchange (fanout pattern)
    *
@@ -255,8 +339,114 @@ public class RabbitMQClient {
     return consumer.subscribeToTopic(exchangeName, routingKeyPattern, listener, syncToMainThread);
   }
 
+  /**
+   * Subscribes to a headers exchange, the broker only delivers messages whose headers match
+   *
+   * @param exchangeName     name of the headers exchange
+   * @param match            headers and values to match
+   * @param matchMode        whether all or any of the headers must match
+   * @param listener         callback for handling messages
+   * @param syncToMainThread whether to execute listener on main thread
+   *
+   * @return true if subscription successful
+   */
+  public boolean subscribeHeaders(String exchangeName,
+    Map<String, Object> match,
+    HeaderMatch matchMode,
+    MessageListener listener,
+    boolean syncToMainThread) {
+    return consumer.subscribeHeaders(exchangeName, match, matchMode, listener, syncToMainThread);
+  }
+
+  /**
+   * Subscribes to one routing key of a direct exchange, all keys of an exchange share one queue
+   *
+   * @param exchangeName     name of the direct exchange
+   * @param routingKey       exact routing key to receive
+   * @param listener         callback for handling messages
+   * @param syncToMainThread whether to execute listener on main thread
+   *
+   * @return true if subscription successful
+   */
+  public boolean subscribeToRoutingKey(String exchangeName,
+    String routingKey,
+    MessageListener listener,
+    boolean syncToMainThread) {
+    return consumer.subscribeToRoutingKey(exchangeName, routingKey, listener, syncToMainThread);
+  }
+
+  /**
+   * Cancels a subscription
+   *
+   * @param key the subscription key, e.g. {@link RabbitMQConsumer#queueKey(String)}, see
+   *            {@link RabbitMQConsumer#unsubscribe(String)}
+   *
+   * @return true if the subscription existed and was cancelled
+   */
+  public boolean unsubscribe(String key) {
+    return consumer.unsubscribe(key);
+  }
+
+  /**
+   * Detaches one listener from a subscription, cancelling the subscription when it was the last listener
+   *
+   * @param key      the subscription key, see {@link #unsubscribe(String)}
+   * @param listener the listener to detach
+   *
+   * @return true if the listener was attached
+   */
+  public boolean unsubscribe(String key, MessageListener listener) {
+    return consumer.unsubscribe(key, listener);
+  }
+
+  /**
+   * Registers a callback run after a connection recovery, once all subscriptions are re-created
+   * Messages sent while the connection was down were missed, use this to resync state
+   *
+   * @param callback the callback to run, on a background thread
+   */
+  public void onRecovered(Runnable callback) {
+    consumer.onResubscribed(callback);
+  }
+
   // ========== Utility Methods ==========
 
+  /**
+   * Gets the platform this client was created for
+   *
+   * @return Platform instance
+   */
+  public Platform getPlatform() {
+    return platform;
+  }
+
+  /**
+   * Gets the executor this client runs its async work on, see {@link RabbitMQConfig.Builder#asyncExecutorType}
+   *
+   * @return async executor
+   */
+  public Executor getAsyncExecutor() {
+    return asyncExecutor;
+  }
+
+  /**
+   * Gets the watchdog reporting main thread blocking, see {@link RabbitMQConfig.Builder#mainThreadWatchdogThreshold}
+   *
+   * @return the watchdog, or null if it is disabled
+   */
+  public BlockingWatchdog getWatchdog() {
+    return watchdog;
+  }
+
+  /**
+   * Checks if this client shares its connection with other clients in the JVM
+   *
+   * @return true if the connection comes from the {@link ConnectionHub}
+   */
+  public boolean isSharedConnection() {
+    return sharedConnection;
+  }
+
   /**
    * Gets the connection manager
    *
@@ -284,6 +474,24 @@ public class RabbitMQClient {
     return consumer;
   }
 
+  /**
+   * Gets the broker health monitor (round-trip latency and health state)
+   *
+   * @return BrokerHealthMonitor instance
+   */
+  public BrokerHealthMonitor getHealthMonitor() {
+    return connectionManager.getHealthMonitor();
+  }
+
+  /**
+   * Gets the metrics recorded for this client's connection
+   *
+   * @return RabbitMQMetrics instance
+   */
+  public RabbitMQMetrics getMetrics() {
+    return connectionManager.getMetrics();
+  }
+
   /**
    * Gets all active consumers
    *
@@ -1,32 +1,60 @@
 package io.hydrodevelopments.celesmq;
 
+import io.hydrodevelopments.celesmq.batch.CoalescingPublisher;
 import io.hydrodevelopments.celesmq.config.RabbitMQConfig;
+import io.hydrodevelopments.celesmq.connection.BrokerHealthMonitor;
+import io.hydrodevelopments.celesmq.listener.MessageListener;
 import io.hydrodevelopments.celesmq.message.MessagePublisher;
 import io.hydrodevelopments.celesmq.message.MessageRouter;
 import io.hydrodevelopments.celesmq.message.MessageResponse;
 import io.hydrodevelopments.celesmq.message.MessageRequest;
+import io.hydrodevelopments.celesmq.messaging.HeaderMatch;
+import io.hydrodevelopments.celesmq.messaging.RabbitMQConsumer;
+import io.hydrodevelopments.celesmq.metrics.RabbitMQMetrics;
+import io.hydrodevelopments.celesmq.platform.DispatchAffinity;
 import io.hydrodevelopments.celesmq.platform.Platform;
 import io.hydrodevelopments.celesmq.util.JsonSerializer;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
 
 /**
  * High-level manager for RabbitMQ that provides an easy-to-use API
  * Handles multiple channels, routing, and request-response patterns automatically
  */
 public class RabbitMQManager {
+    /**
+     * Upper bound for threads used to set up subscriptions concurrently during connect
+     */
+    private static final int MAX_SETUP_THREADS = 8;
+
     private final Platform platform;
     private final RabbitMQClient client;
     private final MessageRouter router;
+    private final MessageListener routerListener;
     private final RabbitMQConfig config;
     private final String replyQueue;
     private final Map<String, String> channels = new HashMap<>();
     private final Set<String> directChannels = new HashSet<>();
+    private final Map<String, String> actionChannels = new ConcurrentHashMap<>();
+
+    // Exchanges (and topic or headers binding keys) this manager's router already receives from
+    private final Set<String> subscribedExchanges = ConcurrentHashMap.newKeySet();
+
+    // Messages sent while connect() is still running
+    private final List<PendingSend> pendingSends = new ArrayList<>();
+    private boolean connecting = false;
 
     /**
      * Creates a new RabbitMQManager
@@ -38,6 +66,8 @@ public class RabbitMQManager {
         this.config = config;
         this.client = new RabbitMQClient(platform, config);
         this.router = new MessageRouter(platform.getLogger());
+        // One listener instance, so action bindings can later be removed by identity
+        this.routerListener = router.asListener();
 
         // Use configured consumer name or generate one
         this.replyQueue = config.getConsumerName() != null ?
@@ -47,23 +77,81 @@ public class RabbitMQManager {
         // Load channels from config
         this.channels.putAll(config.getChannels());
         this.directChannels.addAll(config.getDirectChannels());
+        this.actionChannels.putAll(config.getActionChannels());
+
+        // Bind and unbind action routing keys as handlers come and go
+        router.addRegistrationListener(new MessageRouter.RegistrationListener() {
+            @Override
+            public void onRegistered(String action) {
+                if (!actionChannels.isEmpty() && client.isConnected()) {
+                    client.getAsyncExecutor().execute(() ->
+                        actionChannels.values().forEach(exchange -> bindAction(exchange, action)));
+                }
+            }
+
+            @Override
+            public void onRemoved(String action) {
+                if (!actionChannels.isEmpty() && client.isConnected()) {
+                    client.getAsyncExecutor().execute(() ->
+                        actionChannels.values().forEach(exchange -> unbindAction(exchange, action)));
+                }
+            }
+        });
     }
 
     /**
      * Connects to RabbitMQ and sets up the reply queue consumer
+     * Blocks the calling thread until all subscriptions are set up, prefer {@link #connectAsync()} on the main thread
      * @return true if connection successful
      */
     public boolean connect() {
+        markConnecting();
+        boolean connected = false;
+        try {
+            connected = establish();
+        } finally {
+            finishConnecting(connected);
+        }
+        return connected;
+    }
+
+    /**
+     * Connects to RabbitMQ without blocking the calling thread
+     * Messages sent before the connection is ready are queued and sent once it is
+     * @return CompletableFuture completed with true if connection successful
+     */
+    public CompletableFuture<Boolean> connectAsync() {
+        markConnecting();
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+        client.getAsyncExecutor().execute(() -> {
+            boolean connected = false;
+            try {
+                connected = establish();
+            } catch (Exception e) {
+                platform.getLogger().log(Level.SEVERE, "Failed to connect RabbitMQManager", e);
+            } finally {
+                finishConnecting(connected);
+                future.complete(connected);
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Opens the connection and sets up the reply queue and auto-subscriptions
+     */
+    private boolean establish() {
         if (!client.connect()) {
             return false;
         }
 
-        // Set up reply queue consumer for request-response pattern
-        client.consumeQueue(replyQueue, message -> {
-            router.route(message);
-        }, true, false);
+        long start = System.currentTimeMillis();
+        List<Runnable> setupTasks = new ArrayList<>();
 
-        platform.getLogger().info("RabbitMQManager connected with consumer: " + replyQueue);
+        // Set up reply queue consumer for request-response pattern
+        setupTasks.add(() -> client.consumeQueue(replyQueue, routerListener, true, false));
 
         // Log configured channels
         if (!channels.isEmpty()) {
@@ -80,32 +168,132 @@ public class RabbitMQManager {
             );
         }
 
+        // Action channels receive only the actions this router handles, no matter the auto-subscribe setting
+        if (!actionChannels.isEmpty()) {
+            Set<String> actions = router.getActions();
+            platform.getLogger().info("Loaded " + actionChannels.size() + " action-routed channel(s), binding "
+                    + actions.size() + " action(s)");
+            for (String exchange : actionChannels.values()) {
+                for (String action : actions) {
+                    setupTasks.add(() -> bindAction(exchange, action));
+                }
+            }
+        }
+
         // Auto-subscribe to configured channels if enabled
         if (config.isAutoSubscribe()) {
             // Subscribe to exchange-based channels
             for (Map.Entry<String, String> entry : channels.entrySet()) {
                 String exchange = entry.getValue();
-                subscribe(exchange);
-                platform.getLogger().info("Auto-subscribed to exchange: " + exchange);
+                setupTasks.add(() -> {
+                    subscribe(exchange);
+                    platform.getLogger().info("Auto-subscribed to exchange: " + exchange);
+                });
             }
 
             // Subscribe to direct queue channels
             for (String queue : directChannels) {
-                client.consumeQueue(queue, message -> {
-                    router.route(message);
-                }, true, false);
-                platform.getLogger().info("Auto-subscribed to direct queue: " + queue);
+                setupTasks.add(() -> {
+                    client.consumeQueue(queue, routerListener, true, false);
+                    platform.getLogger().info("Auto-subscribed to direct queue: " + queue);
+                });
             }
         }
 
+        // Each subscription declares and consumes on its own channel, so they can run concurrently
+        runInParallel(setupTasks);
+
+        platform.getLogger().info("RabbitMQManager connected with consumer: " + replyQueue + " ("
+                + setupTasks.size() + " subscription(s) ready in " + (System.currentTimeMillis() - start) + "ms)");
         return true;
     }
 
+    /**
+     * Binds an action's routing key on an action channel's exchange to this manager's router
+     */
+    private void bindAction(String exchange, String action) {
+        client.subscribeToRoutingKey(exchange, action, routerListener, false);
+    }
+
+    /**
+     * Removes an action's routing key binding, the queue goes away with the last action
+     */
+    private void unbindAction(String exchange, String action) {
+        client.unsubscribe(exchange + ":" + action, routerListener);
+    }
+
+    /**
+     * Runs setup tasks concurrently and waits for all of them
+     */
+    private void runInParallel(List<Runnable> tasks) {
+        if (tasks.size() <= 1) {
+            tasks.forEach(Runnable::run);
+            return;
+        }
+
+        ExecutorService setupExecutor = Executors.newFixedThreadPool(Math.min(tasks.size(), MAX_SETUP_THREADS), runnable -> {
+            Thread thread = new Thread(runnable, "CelesMQ-Setup");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            CompletableFuture<?>[] futures = tasks.stream()
+                    .map(task -> CompletableFuture.runAsync(task, setupExecutor))
+                    .toArray(CompletableFuture[]::new);
+            CompletableFuture.allOf(futures).join();
+        } catch (CompletionException e) {
+            platform.getLogger().log(Level.SEVERE, "Error setting up RabbitMQ subscriptions", e.getCause());
+        } finally {
+            setupExecutor.shutdown();
+        }
+    }
+
+    private void markConnecting() {
+        synchronized (pendingSends) {
+            connecting = true;
+        }
+    }
+
+    /**
+     * Leaves the connecting state and sends or fails everything queued meanwhile
+     */
+    private void finishConnecting(boolean connected) {
+        List<PendingSend> queued;
+        synchronized (pendingSends) {
+            connecting = false;
+            queued = new ArrayList<>(pendingSends);
+            pendingSends.clear();
+        }
+
+        if (queued.isEmpty()) {
+            return;
+        }
+
+        if (!connected) {
+            platform.getLogger().warning("Dropping " + queued.size() + " message(s) queued during failed connect");
+            queued.forEach(pending -> pending.future.complete(false));
+            return;
+        }
+
+        platform.getLogger().info("Sending " + queued.size() + " message(s) queued during connect");
+        for (PendingSend pending : queued) {
+            dispatch(pending.channel, pending.message).whenComplete((success, error) -> {
+                if (error != null) {
+                    pending.future.completeExceptionally(error);
+                } else {
+                    pending.future.complete(success);
+                }
+            });
+        }
+    }
+
     /**
      * Disconnects from RabbitMQ
      */
     public void disconnect() {
         client.disconnect();
+        subscribedExchanges.clear();
     }
 
     /**
@@ -133,6 +321,22 @@ public class RabbitMQManager {
         return this;
     }
 
+    /**
+     * Registers an action-routed channel on a direct exchange
+     * Messages sent to it are routed by their action, and this manager binds only the actions it has handlers for
+     * @param name channel name
+     * @param exchange direct exchange name
+     * @return this manager for chaining
+     */
+    public RabbitMQManager addActionChannel(String name, String exchange) {
+        if (actionChannels.put(name, exchange) == null && client.isConnected()) {
+            client.getAsyncExecutor().execute(() ->
+                router.getActions().forEach(action -> bindAction(exchange, action)));
+        }
+        platform.getLogger().info("Added action channel: " + name + " -> " + exchange);
+        return this;
+    }
+
     /**
      * Sends a message to a registered channel (supports both direct queue and exchange routing)
      * @param channel channel name
@@ -140,6 +344,21 @@ public class RabbitMQManager {
      * @return CompletableFuture indicating success
      */
     public CompletableFuture<Boolean> send(String channel, String message) {
+        // Hold messages until the connection and subscriptions are ready
+        synchronized (pendingSends) {
+            if (connecting) {
+                CompletableFuture<Boolean> future = new CompletableFuture<>();
+                pendingSends.add(new PendingSend(channel, message, future));
+                return future;
+            }
+        }
+        return dispatch(channel, message);
+    }
+
+    /**
+     * Routes a message to its direct queue or exchange
+     */
+    private CompletableFuture<Boolean> dispatch(String channel, String message) {
         // Check if it's a direct queue channel
         if (directChannels.contains(channel)) {
             return client.publishToQueue(channel, message);
@@ -151,11 +370,34 @@ public class RabbitMQManager {
             return client.broadcast(exchange, message);
         }
 
+        // Check if it's an action-routed channel, only servers handling the action receive it
+        String actionExchange = actionChannels.get(channel);
+        if (actionExchange != null) {
+            String action = extractAction(message);
+            if (action == null) {
+                platform.getLogger().warning("Message sent to action channel " + channel + " has no action");
+                return CompletableFuture.completedFuture(false);
+            }
+            return client.publishToExchange(actionExchange, action, message);
+        }
+
         // Channel not found
         platform.getLogger().warning("Unknown channel: " + channel);
         return CompletableFuture.completedFuture(false);
     }
 
+    /**
+     * Gets the lower-case action of a JSON message, matching the keys the router binds
+     */
+    private String extractAction(String message) {
+        try {
+            MessageResponse response = new MessageResponse(message);
+            return response.has("action") ? response.getString("action").toLowerCase() : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
     /**
      * Sends a JSON message to a registered channel
      * @param channel channel name
@@ -174,6 +416,19 @@ public class RabbitMQManager {
         return new MessagePublisher(this::sendJson);
     }
 
+    /**
+     * Creates a publisher that sends only the latest payload per channel and key, for chatty state updates
+     * @param windowMs milliseconds from the first unsent update of a key until its latest payload is sent
+     * @param maxStalenessMs milliseconds any update may wait at most, 0 for no limit beyond the window
+     * @return started CoalescingPublisher sending through {@link #send(String, String)}
+     */
+    public CoalescingPublisher coalescingPublisher(long windowMs, long maxStalenessMs) {
+        return new CoalescingPublisher(this::send, platform.getLogger())
+                .window(windowMs)
+                .maxStaleness(maxStalenessMs)
+                .start();
+    }
+
     /**
      * Creates a request builder for request-response pattern
      * @return new MessageRequest builder
@@ -189,9 +444,13 @@ public class RabbitMQManager {
      * @return this manager for chaining
      */
     public RabbitMQManager subscribe(String channel, boolean syncToMainThread) {
-        client.subscribeToBroadcast(channel, message -> {
-            router.route(message);
-        }, syncToMainThread);
+        // The router already receives every message of this exchange, a second listener would route each one twice
+        if (!subscribedExchanges.add(channel)) {
+            return this;
+        }
+        if (!client.subscribeToBroadcast(channel, routerListener, syncToMainThread)) {
+            subscribedExchanges.remove(channel);
+        }
         return this;
     }
 
@@ -204,6 +463,54 @@ public class RabbitMQManager {
         return subscribe(channel, false);
     }
 
+    /**
+     * Consumes a queue in batches, messages of actions registered with
+     * {@link MessageRouter#onBatch(String, java.util.function.Consumer)} are handed over together
+     * @param queue queue name
+     * @param batchSize maximum number of messages per batch
+     * @param maxWaitMs maximum time in milliseconds a message waits for its batch to fill
+     * @return this manager for chaining
+     */
+    public RabbitMQManager consumeBatch(String queue, int batchSize, long maxWaitMs) {
+        client.consumeBatch(queue, router.asBatchListener(), batchSize, maxWaitMs);
+        return this;
+    }
+
+    /**
+     * Subscribes to a channel carrying state updates, only the latest message per key is routed when handlers fall
+     * behind (e.g. while the main thread is lagging), older pending ones are dropped
+     * @param channel channel name (will be created as exchange)
+     * @param keyFunction extracts the coalescing key, e.g. action plus server name
+     * @param syncToMainThread whether to sync to main thread
+     * @return this manager for chaining
+     */
+    public RabbitMQManager subscribeLatest(String channel,
+                                           java.util.function.Function<MessageResponse, String> keyFunction,
+                                           boolean syncToMainThread) {
+        if (!subscribedExchanges.add(channel)) {
+            return this;
+        }
+        MessageListener listener = client.getConsumer().coalescing(routerListener, keyFunction, syncToMainThread);
+        if (!client.subscribeToBroadcast(channel, listener, false)) {
+            subscribedExchanges.remove(channel);
+        }
+        return this;
+    }
+
+    /**
+     * Marks a subscribed channel or queue as best-effort, its messages are dropped while the server is overloaded
+     * (see {@link RabbitMQConfig.Builder#loadThrottleThreshold(double)}) instead of adding to the lag
+     * @param channel channel or queue name the subscription was made with
+     * @param bestEffort whether messages may be dropped under load
+     * @return this manager for chaining
+     */
+    public RabbitMQManager setBestEffort(String channel, boolean bestEffort) {
+        if (!client.getConsumer().setBestEffort(channel, bestEffort)) {
+            platform.getLogger().warning("Cannot mark " + channel + " as best-effort, it is not subscribed");
+        }
+        return this;
+    }
+
     /**
      * Subscribes to a topic exchange with pattern
      * @param exchange exchange name
@@ -212,9 +519,13 @@ public class RabbitMQManager {
      * @return this manager for chaining
      */
     public RabbitMQManager subscribeTopic(String exchange, String pattern, boolean syncToMainThread) {
-        client.subscribeToTopic(exchange, pattern, message -> {
-            router.route(message);
-        }, syncToMainThread);
+        String binding = exchange + ":" + pattern;
+        if (!subscribedExchanges.add(binding)) {
+            return this;
+        }
+        if (!client.subscribeToTopic(exchange, pattern, routerListener, syncToMainThread)) {
+            subscribedExchanges.remove(binding);
+        }
         return this;
     }
 
@@ -228,6 +539,56 @@ public class RabbitMQManager {
         return subscribeTopic(exchange, pattern, false);
     }
 
+    /**
+     * Subscribes to a headers exchange, the broker filters by header so unmatched messages never arrive
+     * @param exchange headers exchange name
+     * @param match headers and values to match, e.g. gamemode or region
+     * @param matchMode whether all or any of the headers must match
+     * @param syncToMainThread whether to sync to main thread
+     * @return this manager for chaining
+     */
+    public RabbitMQManager subscribeHeaders(String exchange, Map<String, Object> match, HeaderMatch matchMode,
+                                            boolean syncToMainThread) {
+        String binding = RabbitMQConsumer.headersKey(exchange, match, matchMode);
+        if (!subscribedExchanges.add(binding)) {
+            return this;
+        }
+        if (!client.subscribeHeaders(exchange, match, matchMode, routerListener, syncToMainThread)) {
+            subscribedExchanges.remove(binding);
+        }
+        return this;
+    }
+
+    /**
+     * Subscribes to a headers exchange with default async behavior
+     * @param exchange headers exchange name
+     * @param match headers and values to match
+     * @param matchMode whether all or any of the headers must match
+     * @return this manager for chaining
+     */
+    public RabbitMQManager subscribeHeaders(String exchange, Map<String, Object> match, HeaderMatch matchMode) {
+        return subscribeHeaders(exchange, match, matchMode, false);
+    }
+
+    /**
+     * Sends a message to a headers exchange, only subscribers whose match the headers satisfy receive it
+     * @param exchange headers exchange name
+     * @param headers message headers
+     * @param message message to send
+     * @return CompletableFuture indicating success
+     */
+    public CompletableFuture<Boolean> sendWithHeaders(String exchange, Map<String, Object> headers, String message) {
+        return client.publishToHeaders(exchange, message, headers);
+    }
+
+    /**
+     * Gets the exchanges (and "exchange:pattern" topic bindings) this manager is subscribed to
+     * @return subscribed exchanges and bindings
+     */
+    public Set<String> getSubscribedExchanges() {
+        return new HashSet<>(subscribedExchanges);
+    }
+
     /**
      * Registers a handler for a specific action
      * @param action action name
@@ -239,6 +600,32 @@ public class RabbitMQManager {
         return this;
     }
 
+    /**
+     * Registers a handler that runs on the region or instance owning what a message is about
+     * On Folia and Minestom handlers for different regions run in parallel, other platforms use the main thread
+     * @param action action name
+     * @param affinity resolves where a message is handled, e.g. the entity of the player it names
+     * @param handler handler function
+     * @return this manager for chaining
+     */
+    public RabbitMQManager on(String action,
+                              java.util.function.Function<MessageResponse, DispatchAffinity> affinity,
+                              java.util.function.Consumer<MessageResponse> handler) {
+        router.on(action, affinity, handler);
+        return this;
+    }
+
+    /**
+     * Registers a handler receiving an action's messages in batches
+     * @param action action name
+     * @param handler handler function
+     * @return this manager for chaining
+     */
+    public RabbitMQManager onBatch(String action, java.util.function.Consumer<List<MessageResponse>> handler) {
+        router.onBatch(action, handler);
+        return this;
+    }
+
     /**
      * Registers a default handler for unmatched actions
      * @param handler handler function
@@ -259,6 +646,17 @@ public class RabbitMQManager {
         return this;
     }
 
+    /**
+     * Registers a callback run after a connection recovery, once all subscriptions are re-created
+     * Messages sent while the connection was down were missed, use this to resync state
+     * @param callback the callback to run, on a background thread
+     * @return this manager for chaining
+     */
+    public RabbitMQManager onRecovered(Runnable callback) {
+        client.onRecovered(callback);
+        return this;
+    }
+
     /**
      * Gets the underlying RabbitMQClient
      * @return RabbitMQClient instance
@@ -290,4 +688,50 @@ public class RabbitMQManager {
     public boolean isConnected() {
         return client.isConnected();
     }
-}
\ No newline at end of file
+
+    /**
+     * Checks if the broker has blocked the connection (memory or disk alarm)
+     * While blocked, sends are buffered or rejected according to the configured policy
+     * @return true if blocked
+     */
+    public boolean isBlocked() {
+        return client.isBlocked();
+    }
+
+    /**
+     * Gets the broker health state measured by the background latency probe
+     * Without health checks only the connection state is reported
+     * @return HEALTHY, DEGRADED or DOWN
+     */
+    public BrokerHealthMonitor.HealthState getHealthState() {
+        return client.getHealthMonitor().getState();
+    }
+
+    /**
+     * Gets the broker health monitor for latency percentiles and state listeners
+     * @return BrokerHealthMonitor instance
+     */
+    public BrokerHealthMonitor getHealthMonitor() {
+        return client.getHealthMonitor();
+    }
+
+    /**
+     * Gets the metrics recorded for this manager's connection
+     * @return RabbitMQMetrics instance
+     */
+    public RabbitMQMetrics getMetrics() {
+        return client.getMetrics();
+    }
+
+    private static class PendingSend {
+        final String channel;
+        final String message;
+        final CompletableFuture<Boolean> future;
+
+        PendingSend(String channel, String message, CompletableFuture<Boolean> future) {
+            this.channel = channel;
+            this.message = message;
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package io.hydrodevelopments.celesmq.batch;
+
+import io.hydrodevelopments.celesmq.RabbitMQClient;
+import io.hydrodevelopments.celesmq.connection.SharedExecutors;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.logging.Logger;
+
+/**
+ * Publishes only the latest payload per key, for state updates that change many times per second
+ * <p>
+ * The first unsent update of a channel and key opens a window, and the latest payload is sent when the window ends.
+ * Newer payloads replace the waiting one without moving the window, so a key that changes constantly goes out once per
+ * window. The optional maximum staleness caps the window, no update waits longer than it. Futures of replaced payloads
+ * complete with the result of the publish that superseded them.
+ */
+public class CoalescingPublisher {
+
+  private final BiFunction<String, String, CompletableFuture<Boolean>> sender;
+  private final Logger logger;
+  private final Map<PendingKey, Pending> pending = new HashMap<>();
+
+  private long window;
+  private long maxStaleness = 0;
+  private boolean started = false;
+  private long coalesced = 0;
+
+  /**
+   * Creates a coalescing publisher that broadcasts to exchanges, the channel is the exchange name
+   */
+  public CoalescingPublisher(RabbitMQClient client, Logger logger) {
+    this(client::broadcast, logger);
+  }
+
+  /**
+   * Creates a coalescing publisher with a custom send function, e.g. {@code manager::send}
+   *
+   * @param sender sends a message to a channel
+   * @param logger logger for lifecycle messages
+   */
+  public CoalescingPublisher(BiFunction<String, String, CompletableFuture<Boolean>> sender, Logger logger) {
+    this.sender = sender;
+    this.logger = logger;
+  }
+
+  /**
+   * Sets the window (milliseconds from the first unsent update of a key until its latest payload is sent)
+   */
+  public CoalescingPublisher window(long millis) {
+    this.window = millis;
+    return this;
+  }
+
+  /**
+   * Sets the maximum staleness (milliseconds any update may wait at most), 0 for no limit beyond the window
+   */
+  public CoalescingPublisher maxStaleness(long millis) {
+    this.maxStaleness = millis;
+    return this;
+  }
+
+  /**
+   * Starts the coalescing publisher
+   *
+   * @throws IllegalStateException if window not configured or maxStaleness negative
+   */
+  public synchronized CoalescingPublisher start() {
+    if (!started) {
+      if (window <= 0) {
+        throw new IllegalStateException("Window must be configured before starting");
+      }
+      if (maxStaleness < 0) {
+        throw new IllegalStateException("Max staleness cannot be negative");
+      }
+      started = true;
+      logger.info("CoalescingPublisher started (window: " + window + "ms, max staleness: " + maxStaleness + "ms)");
+    }
+    return this;
+  }
+
+  /**
+   * Queues the latest payload for a key, replacing a payload of the same key that was not sent yet
+   *
+   * @param channel channel to send to
+   * @param key     what the payload describes, e.g. "player_count"
+   * @param message payload
+   *
+   * @return future completed with the result of the publish that carries this payload or a newer one
+   */
+  public synchronized CompletableFuture<Boolean> publish(String channel, String key, String message) {
+    if (!started) {
+      throw new IllegalStateException("CoalescingPublisher must be started before publishing");
+    }
+
+    PendingKey pendingKey = new PendingKey(channel, key);
+    Pending entry = pending.get(pendingKey);
+
+    if (entry == null) {
+      entry = new Pending(pendingKey);
+      pending.put(pendingKey, entry);
+      // The window is fixed by the first update, later ones only replace the payload
+      long delay = maxStaleness > 0 ? Math.min(window, maxStaleness) : window;
+      Pending scheduled = entry;
+      entry.timer = SharedExecutors.scheduler().schedule(() -> flush(scheduled), delay, TimeUnit.MILLISECONDS);
+    } else {
+      coalesced++;
+    }
+
+    CompletableFuture<Boolean> future = new CompletableFuture<>();
+    entry.message = message;
+    entry.futures.add(future);
+    return future;
+  }
+
+  /**
+   * Sends a pending entry unless it was sent already
+   */
+  private void flush(Pending entry) {
+    synchronized (this) {
+      if (!pending.remove(entry.key, entry)) {
+        return;
+      }
+    }
+
+    sender.apply(entry.key.channel, entry.message).whenComplete((success, error) -> {
+      for (CompletableFuture<Boolean> future : entry.futures) {
+        if (error != null) {
+          future.completeExceptionally(error);
+        } else {
+          future.complete(success);
+        }
+      }
+    });
+  }
+
+  /**
+   * Sends every pending payload immediately
+   */
+  public void flush() {
+    List<Pending> entries;
+    synchronized (this) {
+      entries = new ArrayList<>(pending.values());
+    }
+    for (Pending entry : entries) {
+      entry.timer.cancel(false);
+      flush(entry);
+    }
+  }
+
+  /**
+   * Stops the coalescing publisher and sends remaining payloads
+   */
+  public void stop() {
+    synchronized (this) {
+      if (!started) {
+        return;
+      }
+      started = false;
+    }
+    flush();
+    logger.info("CoalescingPublisher stopped");
+  }
+
+  /**
+   * Gets the number of keys with an unsent payload
+   */
+  public synchronized int getPendingCount() {
+    return pending.size();
+  }
+
+  /**
+   * Gets the number of payloads that were replaced before being sent
+   */
+  public synchronized long getCoalescedCount() {
+    return coalesced;
+  }
+
+  private static final class PendingKey {
+    final String channel;
+    final String key;
+
+    PendingKey(String channel, String key) {
+      this.channel = channel;
+      this.key = key;
+    }
+
+    @Override public boolean equals(Object o) {
+      if (!(o instanceof PendingKey)) {
+        return false;
+      }
+      PendingKey other = (PendingKey) o;
+      return channel.equals(other.channel) && key.equals(other.key);
+    }
+
+    @Override public int hashCode() {
+      return Objects.hash(channel, key);
+    }
+  }
+
+  private static final class Pending {
+    final PendingKey key;
+    final List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+    String message;
+    ScheduledFuture<?> timer;
+
+    Pending(PendingKey key) {
+      this.key = key;
+    }
+  }
+}
@@ -1,7 +1,11 @@
 package io.hydrodevelopments.celesmq.config;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -18,6 +22,13 @@ public class RabbitMQConfig {
   private final int connectionTimeout;
   private final int networkRecoveryInterval;
   private final boolean automaticRecoveryEnabled;
+  private final long recoveryMaxDelay;
+  private final int recoveryConcurrency;
+  private final boolean subscriptionRecovery;
+
+  // Cluster nodes ("host:port"), the first entry is host/port when those are set
+  private final List<String> addresses;
+  private final long failoverDelay;
 
   // SSL/TLS configuration
   private final boolean useSsl;
@@ -34,6 +45,8 @@ public class RabbitMQConfig {
   private final Map<String, String> channels;
   // Direct channels (queue-based routing)
   private final Set<String> directChannels;
+  // Action-routed channels (direct exchange per logical channel, routing key is the message's action)
+  private final Map<String, String> actionChannels;
   private final boolean autoSubscribe;
 
   // Queue configuration
@@ -47,6 +60,51 @@ public class RabbitMQConfig {
   private final boolean exchangeAutoDelete;
   private final Map<String, Object> exchangeArguments;
 
+  // Flow control (connection.blocked) configuration
+  private final BlockedPublishPolicy blockedPublishPolicy;
+  private final int blockedPublishBufferSize;
+
+  // Broker health monitoring
+  private final long healthCheckInterval;
+  private final long healthDegradedThreshold;
+
+  // Client threading
+  private final boolean useNio;
+  private final int nioThreads;
+  private final int consumerThreads;
+  private final boolean useVirtualThreads;
+  private final int consumerChannelPoolSize;
+  private final boolean collapseTopicBindings;
+  private final boolean sharedConnection;
+
+  // Fair scheduling between clients on a shared connection
+  private final String tenantName;
+  private final int publishWeight;
+  private final double publishRateLimit;
+  private final int publishConcurrency;
+
+  // Retry of failed deliveries
+  private final int retryAttempts;
+  private final long retryInitialDelay;
+  private final double retryBackoffMultiplier;
+
+  // Consumer backpressure
+  private final int consumerHighWatermark;
+  private final int consumerLowWatermark;
+
+  // Load throttling
+  private final double loadThrottleThreshold;
+
+  // Async execution
+  private final AsyncExecutorType asyncExecutorType;
+  private final int asyncThreads;
+
+  // Main thread time budget
+  private final long mainThreadBudget;
+
+  // Main thread blocking watchdog
+  private final long mainThreadWatchdogThreshold;
+
   private RabbitMQConfig(Builder builder) {
     this.host = builder.host;
     this.port = builder.port;
@@ -56,6 +114,11 @@ public class RabbitMQConfig {
     this.connectionTimeout = builder.connectionTimeout;
     this.networkRecoveryInterval = builder.networkRecoveryInterval;
     this.automaticRecoveryEnabled = builder.automaticRecoveryEnabled;
+    this.recoveryMaxDelay = builder.recoveryMaxDelay;
+    this.recoveryConcurrency = builder.recoveryConcurrency;
+    this.subscriptionRecovery = builder.subscriptionRecovery;
+    this.addresses = builder.resolveAddresses();
+    this.failoverDelay = builder.failoverDelay;
     this.useSsl = builder.useSsl;
     this.sslProtocol = builder.sslProtocol;
     this.trustStorePath = builder.trustStorePath;
@@ -66,6 +129,7 @@ public class RabbitMQConfig {
     this.consumerName = builder.consumerName;
     this.channels = new HashMap<>(builder.channels);
     this.directChannels = new HashSet<>(builder.directChannels);
+    this.actionChannels = new HashMap<>(builder.actionChannels);
     this.autoSubscribe = builder.autoSubscribe;
     this.queueDurable = builder.queueDurable;
     this.queueExclusive = builder.queueExclusive;
@@ -74,14 +138,63 @@ public class RabbitMQConfig {
     this.exchangeDurable = builder.exchangeDurable;
     this.exchangeAutoDelete = builder.exchangeAutoDelete;
     this.exchangeArguments = builder.exchangeArguments != null ? new HashMap<>(builder.exchangeArguments) : null;
+    this.blockedPublishPolicy = builder.blockedPublishPolicy;
+    this.blockedPublishBufferSize = builder.blockedPublishBufferSize;
+    this.healthCheckInterval = builder.healthCheckInterval;
+    this.healthDegradedThreshold = builder.healthDegradedThreshold;
+    this.useNio = builder.useNio;
+    this.nioThreads = builder.nioThreads;
+    this.consumerThreads = builder.consumerThreads;
+    this.useVirtualThreads = builder.useVirtualThreads;
+    this.consumerChannelPoolSize = builder.consumerChannelPoolSize;
+    this.collapseTopicBindings = builder.collapseTopicBindings;
+    this.sharedConnection = builder.sharedConnection;
+    this.tenantName = builder.tenantName;
+    this.publishWeight = builder.publishWeight;
+    this.publishRateLimit = builder.publishRateLimit;
+    this.publishConcurrency = builder.publishConcurrency;
+    this.retryAttempts = builder.retryAttempts;
+    this.retryInitialDelay = builder.retryInitialDelay;
+    this.retryBackoffMultiplier = builder.retryBackoffMultiplier;
+    this.consumerHighWatermark = builder.consumerHighWatermark;
+    this.consumerLowWatermark = builder.consumerLowWatermark;
+    this.loadThrottleThreshold = builder.loadThrottleThreshold;
+    this.asyncExecutorType = builder.asyncExecutorType;
+    this.asyncThreads = builder.asyncThreads;
+    this.mainThreadBudget = builder.mainThreadBudget;
+    this.mainThreadWatchdogThreshold = builder.mainThreadWatchdogThreshold;
   }
 
+  /**
+   * Gets the configured host, or the first cluster node's host when only addresses were given
+   */
   public String getHost() {
-    return host;
+    return host != null && !host.isEmpty() ? host : addresses.get(0).substring(0, addresses.get(0).lastIndexOf(':'));
   }
 
+  /**
+   * Gets the configured port, or the first cluster node's port when only addresses were given
+   */
   public int getPort() {
-    return port;
+    return port > 0 ? port : Integer.parseInt(addresses.get(0).substring(addresses.get(0).lastIndexOf(':') + 1));
+  }
+
+  /**
+   * Gets every broker node to connect to as "host:port" entries
+   */
+  public List<String> getAddresses() {
+    return new ArrayList<>(addresses);
+  }
+
+  /**
+   * Checks if more than one broker node is configured
+   */
+  public boolean isCluster() {
+    return addresses.size() > 1;
+  }
+
+  public long getFailoverDelay() {
+    return failoverDelay;
   }
 
   public String getUsername() {
@@ -108,6 +221,18 @@ public class RabbitMQConfig {
     return automaticRecoveryEnabled;
   }
 
+  public long getRecoveryMaxDelay() {
+    return recoveryMaxDelay;
+  }
+
+  public int getRecoveryConcurrency() {
+    return recoveryConcurrency;
+  }
+
+  public boolean isSubscriptionRecovery() {
+    return subscriptionRecovery;
+  }
+
   public String getConsumerName() {
     return consumerName;
   }
@@ -120,6 +245,10 @@ public class RabbitMQConfig {
     return new HashSet<>(directChannels);
   }
 
+  public Map<String, String> getActionChannels() {
+    return new HashMap<>(actionChannels);
+  }
+
   public boolean isAutoSubscribe() {
     return autoSubscribe;
   }
@@ -180,6 +309,192 @@ public class RabbitMQConfig {
     return exchangeArguments != null ? new HashMap<>(exchangeArguments) : null;
   }
 
+  public BlockedPublishPolicy getBlockedPublishPolicy() {
+    return blockedPublishPolicy;
+  }
+
+  public int getBlockedPublishBufferSize() {
+    return blockedPublishBufferSize;
+  }
+
+  public long getHealthCheckInterval() {
+    return healthCheckInterval;
+  }
+
+  public long getHealthDegradedThreshold() {
+    return healthDegradedThreshold;
+  }
+
+  public boolean isUseNio() {
+    return useNio;
+  }
+
+  public int getNioThreads() {
+    return nioThreads;
+  }
+
+  public int getConsumerThreads() {
+    return consumerThreads;
+  }
+
+  public boolean isUseVirtualThreads() {
+    return useVirtualThreads;
+  }
+
+  public int getConsumerChannelPoolSize() {
+    return consumerChannelPoolSize;
+  }
+
+  public boolean isCollapseTopicBindings() {
+    return collapseTopicBindings;
+  }
+
+  public boolean isSharedConnection() {
+    return sharedConnection;
+  }
+
+  /**
+   * Gets the name this client publishes under on a shared connection
+   * Falls back to the consumer name, or null to let the client pick one
+   */
+  public String getTenantName() {
+    return tenantName != null ? tenantName : consumerName;
+  }
+
+  public int getPublishWeight() {
+    return publishWeight;
+  }
+
+  public double getPublishRateLimit() {
+    return publishRateLimit;
+  }
+
+  public int getPublishConcurrency() {
+    return publishConcurrency;
+  }
+
+  public int getRetryAttempts() {
+    return retryAttempts;
+  }
+
+  public long getRetryInitialDelay() {
+    return retryInitialDelay;
+  }
+
+  public double getRetryBackoffMultiplier() {
+    return retryBackoffMultiplier;
+  }
+
+  public int getConsumerHighWatermark() {
+    return consumerHighWatermark;
+  }
+
+  public int getConsumerLowWatermark() {
+    return consumerLowWatermark;
+  }
+
+  public double getLoadThrottleThreshold() {
+    return loadThrottleThreshold;
+  }
+
+  public AsyncExecutorType getAsyncExecutorType() {
+    return asyncExecutorType;
+  }
+
+  public int getAsyncThreads() {
+    return asyncThreads;
+  }
+
+  public long getMainThreadBudget() {
+    return mainThreadBudget;
+  }
+
+  public long getMainThreadWatchdogThreshold() {
+    return mainThreadWatchdogThreshold;
+  }
+
+  /**
+   * Gets a key identifying the broker connection these settings produce
+   * Configs with the same key can share one connection, other settings (queue arguments, policies) may differ
+   *
+   * @return connection key
+   */
+  public ConnectionKey getConnectionKey() {
+    return new ConnectionKey(this);
+  }
+
+  /**
+   * Identifies a broker connection by everything that goes into opening it, credentials included
+   * Keys compare the credentials themselves, so configs only share a connection if they would log in the same way.
+   * {@link #toString()} leaves the passwords out.
+   */
+  public static final class ConnectionKey {
+    private final List<Object> parts;
+    private final String description;
+
+    private ConnectionKey(RabbitMQConfig config) {
+      this.parts = Arrays.asList(config.addresses, config.username, config.password, config.virtualHost,
+        config.useSsl, config.useSsl ? config.sslProtocol : null, config.useSsl ? config.trustStorePath : null,
+        config.useSsl ? config.trustStorePassword : null, config.useSsl ? config.keyStorePath : null,
+        config.useSsl ? config.keyStorePassword : null, config.useSsl && config.validateServerCertificate,
+        config.useNio);
+      this.description = config.username + "@" + String.join(",", config.addresses) + config.virtualHost
+        + (config.useSsl ? " (TLS)" : "");
+    }
+
+    @Override public boolean equals(Object o) {
+      return o instanceof ConnectionKey && parts.equals(((ConnectionKey) o).parts);
+    }
+
+    @Override public int hashCode() {
+      return parts.hashCode();
+    }
+
+    @Override public String toString() {
+      return description;
+    }
+  }
+
+  /**
+   * How publishers behave while the broker has blocked the connection (memory or disk alarm)
+   */
+  public enum BlockedPublishPolicy {
+    /**
+     * Keep writing to the socket, publishing threads stall until the broker unblocks
+     */
+    BLOCK,
+    /**
+     * Hold publishes in a bounded in-memory buffer and flush them once the broker unblocks
+     */
+    BUFFER,
+    /**
+     * Complete publishes with false immediately while blocked
+     */
+    FAIL_FAST
+  }
+
+  /**
+   * What runs the library's async work
+   */
+  public enum AsyncExecutorType {
+    /**
+     * The platform's async scheduler (Bukkit, BungeeCord, Velocity, Sponge, Nukkit)
+     */
+    PLATFORM,
+    /**
+     * A fixed pool of daemon threads
+     */
+    FIXED,
+    /**
+     * A work-stealing ForkJoin pool in FIFO mode, for many short tasks
+     */
+    FORK_JOIN,
+    /**
+     * A virtual thread per task (Java 21+), falls back to FIXED on older JVMs
+     */
+    VIRTUAL
+  }
+
   /**
    * Builder class for RabbitMQConfig
    * All fields must be explicitly configured - no defaults
@@ -193,9 +508,15 @@ public class RabbitMQConfig {
     private int connectionTimeout;
     private int networkRecoveryInterval;
     private boolean automaticRecoveryEnabled;
+    private long recoveryMaxDelay = 60000;
+    private int recoveryConcurrency = 2;
+    private boolean subscriptionRecovery = true;
+    private final List<String> addresses = new ArrayList<>();
+    private long failoverDelay = 100;
     private String consumerName;
     private Map<String, String> channels = new HashMap<>();
     private Set<String> directChannels = new HashSet<>();
+    private Map<String, String> actionChannels = new HashMap<>();
     private boolean autoSubscribe;
 
     // SSL/TLS configuration (optional)
@@ -213,6 +534,31 @@ public class RabbitMQConfig {
     private boolean exchangeDurable = true;
     private boolean exchangeAutoDelete = false;
     private Map<String, Object> exchangeArguments;
+    private BlockedPublishPolicy blockedPublishPolicy = BlockedPublishPolicy.BUFFER;
+    private int blockedPublishBufferSize = 10000;
+    private long healthCheckInterval = 5000;
+    private long healthDegradedThreshold = 250;
+    private boolean useNio = false;
+    private int nioThreads = 1;
+    private int consumerThreads = 0;
+    private boolean useVirtualThreads = false;
+    private int consumerChannelPoolSize = 4;
+    private boolean collapseTopicBindings = false;
+    private boolean sharedConnection = false;
+    private String tenantName;
+    private int publishWeight = 1;
+    private double publishRateLimit = 0;
+    private int publishConcurrency = 16;
+    private int retryAttempts = 0;
+    private long retryInitialDelay = 1000;
+    private double retryBackoffMultiplier = 2.0;
+    private int consumerHighWatermark = 0;
+    private int consumerLowWatermark = 0;
+    private double loadThrottleThreshold = 0.8;
+    private AsyncExecutorType asyncExecutorType = AsyncExecutorType.FIXED;
+    private int asyncThreads = 0;
+    private long mainThreadBudget = 10;
+    private long mainThreadWatchdogThreshold = 0;
 
     public Builder host(String host) {
       this.host = host;
@@ -224,6 +570,90 @@ public class RabbitMQConfig {
       return this;
     }
 
+    /**
+     * Sets the maximum delay between recovery attempts in milliseconds
+     * Delays start at the network recovery interval and grow with random jitter up to this cap,
+     * so a fleet of servers does not reconnect in lockstep after a broker restart
+     * Values below the network recovery interval are raised to it
+     * Default is 60000
+     */
+    public Builder recoveryMaxDelay(long recoveryMaxDelay) {
+      this.recoveryMaxDelay = recoveryMaxDelay;
+      return this;
+    }
+
+    /**
+     * Sets how many connections in this JVM may run a recovery attempt at the same time
+     * Default is 2
+     */
+    public Builder recoveryConcurrency(int recoveryConcurrency) {
+      this.recoveryConcurrency = recoveryConcurrency;
+      return this;
+    }
+
+    /**
+     * Re-creates consumer queues, bindings and consumers after a connection recovery, all subscriptions in parallel
+     * Replaces the client's built-in topology recovery, which replays declarations one at a time
+     * Disable if you declare topology on raw channels and rely on the client to recover it
+     * Default is true
+     */
+    public Builder subscriptionRecovery(boolean subscriptionRecovery) {
+      this.subscriptionRecovery = subscriptionRecovery;
+      return this;
+    }
+
+    /**
+     * Adds a cluster node to connect to
+     * Connections are placed on the reachable node with the lowest latency and fail over to the next one
+     *
+     * <p>Example:
+     * <pre>{@code
+     * .addAddress("rabbit-1", 5672)
+     * .addAddress("rabbit-2", 5672)
+     * .addAddress("rabbit-3", 5672)
+     * }</pre>
+     *
+     * @param host node host name
+     * @param port node port
+     * @return this builder
+     */
+    public Builder addAddress(String host, int port) {
+      this.addresses.add(host + ":" + port);
+      return this;
+    }
+
+    /**
+     * Sets the cluster nodes to connect to as "host:port" entries
+     * Replaces any previously added addresses
+     */
+    public Builder addresses(List<String> addresses) {
+      this.addresses.clear();
+      this.addresses.addAll(addresses);
+      return this;
+    }
+
+    /**
+     * Sets the delay in milliseconds before the first recovery attempt when several nodes are configured
+     * Another node is usually reachable, so failover does not wait out the full network recovery interval
+     * Default is 100
+     */
+    public Builder failoverDelay(long failoverDelay) {
+      this.failoverDelay = failoverDelay;
+      return this;
+    }
+
+    /**
+     * Sets the queue leader locator for queues declared by this client (e.g. "client-local", "balanced")
+     * With "client-local" a new queue's leader is placed on the node this client is connected to,
+     * which is the lowest-latency node, so consumers read from a local leader.
+     * Requires RabbitMQ 3.12 or newer.
+     *
+     * WARNING: Changing this for an existing queue will cause PRECONDITION_FAILED errors.
+     */
+    public Builder queueLeaderLocator(String locator) {
+      return addQueueArgument("x-queue-leader-locator", locator);
+    }
+
     public Builder username(String username) {
       this.username = username;
       return this;
@@ -298,6 +728,25 @@ public class RabbitMQConfig {
       return this;
     }
 
+    /**
+     * Adds an action-routed channel (uses a direct exchange, the message's action is the routing key)
+     * Each server binds only the actions its router has handlers for, instead of receiving every message and
+     * discarding the unhandled ones.
+     *
+     * <p>Example:
+     * <pre>{@code
+     * .addActionChannel("game-events", "game-events-exchange")
+     * }</pre>
+     *
+     * @param channelName the logical channel name
+     * @param exchangeName the RabbitMQ direct exchange name
+     * @return this builder
+     */
+    public Builder addActionChannel(String channelName, String exchangeName) {
+      this.actionChannels.put(channelName, exchangeName);
+      return this;
+    }
+
     /**
      * Sets multiple exchange-based channels at once
      */
@@ -516,13 +965,281 @@ public class RabbitMQConfig {
       return this;
     }
 
+    /**
+     * Sets what publishers do while the broker blocks the connection
+     * (RabbitMQ raises connection.blocked under memory or disk alarms)
+     * Default is BUFFER
+     */
+    public Builder blockedPublishPolicy(BlockedPublishPolicy blockedPublishPolicy) {
+      this.blockedPublishPolicy = blockedPublishPolicy;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of publishes held while the connection is blocked
+     * Only used with the BUFFER policy, publishes beyond this limit fail fast
+     * Default is 10000
+     */
+    public Builder blockedPublishBufferSize(int blockedPublishBufferSize) {
+      this.blockedPublishBufferSize = blockedPublishBufferSize;
+      return this;
+    }
+
+    /**
+     * Sets how often the broker round-trip latency is probed in milliseconds
+     * Default is 5000, set to 0 to disable health monitoring
+     */
+    public Builder healthCheckInterval(long healthCheckInterval) {
+      this.healthCheckInterval = healthCheckInterval;
+      return this;
+    }
+
+    /**
+     * Sets the p90 round-trip latency in milliseconds above which the broker is reported as degraded
+     * Default is 250
+     */
+    public Builder healthDegradedThreshold(long healthDegradedThreshold) {
+      this.healthDegradedThreshold = healthDegradedThreshold;
+      return this;
+    }
+
+    /**
+     * Enables the amqp-client NIO mode
+     * Connections are then served by a small number of I/O loop threads instead of one reader thread each
+     * Default is false
+     */
+    public Builder useNio(boolean useNio) {
+      this.useNio = useNio;
+      return this;
+    }
+
+    /**
+     * Sets the number of NIO I/O loop threads, only used when NIO is enabled
+     * Default is 1
+     */
+    public Builder nioThreads(int nioThreads) {
+      this.nioThreads = nioThreads;
+      return this;
+    }
+
+    /**
+     * Sets the size of the consumer dispatch pool shared by all connections
+     * Default is 0, which keeps the client's own pool per connection
+     */
+    public Builder consumerThreads(int consumerThreads) {
+      this.consumerThreads = consumerThreads;
+      return this;
+    }
+
+    /**
+     * Dispatches consumer deliveries on virtual threads (Java 21+)
+     * Falls back to the consumer thread pool on older JVMs
+     * Default is false
+     */
+    public Builder useVirtualThreads(boolean useVirtualThreads) {
+      this.useVirtualThreads = useVirtualThreads;
+      return this;
+    }
+
+    /**
+     * Sets how many channels a client's subscriptions are spread over
+     * Deliveries on one channel are dispatched one after another, more channels allow more parallel listeners
+     * Default is 4
+     */
+    public Builder consumerChannelPoolSize(int consumerChannelPoolSize) {
+      this.consumerChannelPoolSize = consumerChannelPoolSize;
+      return this;
+    }
+
+    /**
+     * Uses one queue per topic exchange instead of one per pattern
+     * Overlapping patterns are collapsed into the fewest bindings that still cover all of them (e.g. "server.#" makes
+     * "server.*.events" redundant) and deliveries are matched to listeners locally by routing key
+     * Default is false
+     */
+    public Builder collapseTopicBindings(boolean collapseTopicBindings) {
+      this.collapseTopicBindings = collapseTopicBindings;
+      return this;
+    }
+
+    /**
+     * Shares one broker connection with every other client in this JVM that connects with the same broker settings
+     * (nodes, credentials, virtual host, SSL). Each client keeps its own router, reply queue and subscriptions.
+     * Default is false
+     */
+    public Builder sharedConnection(boolean sharedConnection) {
+      this.sharedConnection = sharedConnection;
+      return this;
+    }
+
+    /**
+     * Sets the name this client's publishes are scheduled and reported under on a shared connection
+     * Defaults to the consumer name
+     */
+    public Builder tenantName(String tenantName) {
+      this.tenantName = tenantName;
+      return this;
+    }
+
+    /**
+     * Sets this client's share of a shared connection relative to the other clients on it
+     * A client with weight 4 gets four times the publish bandwidth of a client with weight 1 when both are busy
+     * Default is 1
+     */
+    public Builder publishWeight(int publishWeight) {
+      this.publishWeight = publishWeight;
+      return this;
+    }
+
+    /**
+     * Caps this client's publishes per second on a shared connection, excess publishes wait in its queue
+     * Default is 0, which means no cap
+     */
+    public Builder publishRateLimit(double publishRateLimit) {
+      this.publishRateLimit = publishRateLimit;
+      return this;
+    }
+
+    /**
+     * Sets how many of this client's publishes may run at once on a shared connection
+     * The fair scheduler only orders publishes, they run in parallel on the async executor up to this limit
+     * Default is 16
+     */
+    public Builder publishConcurrency(int publishConcurrency) {
+      this.publishConcurrency = publishConcurrency;
+      return this;
+    }
+
+    /**
+     * Sets how many times a failed message on a manually acknowledged queue is retried with a delay
+     * Each attempt waits in its own delay queue (initial delay times the multiplier per attempt), after the last
+     * one the message is moved to the "&lt;queue&gt;.parking" queue instead of being redelivered
+     * Default is 0, which rejects and requeues failed messages immediately
+     */
+    public Builder retryAttempts(int retryAttempts) {
+      this.retryAttempts = retryAttempts;
+      return this;
+    }
+
+    /**
+     * Sets the delay before the first retry in milliseconds
+     * Default is 1000
+     */
+    public Builder retryInitialDelay(long retryInitialDelay) {
+      this.retryInitialDelay = retryInitialDelay;
+      return this;
+    }
+
+    /**
+     * Sets the factor each retry delay grows by over the previous one
+     * Default is 2.0
+     */
+    public Builder retryBackoffMultiplier(double retryBackoffMultiplier) {
+      this.retryBackoffMultiplier = retryBackoffMultiplier;
+      return this;
+    }
+
+    /**
+     * Sets how many received messages may wait for their listeners before a queue consumer is paused
+     * While paused, messages stay in the broker instead of piling up in memory (e.g. behind a lagging main thread)
+     * Only consumers of named, non-auto-delete queues can pause, server-named queues would be deleted
+     * Default is 0, which disables pausing
+     */
+    public Builder consumerHighWatermark(int consumerHighWatermark) {
+      this.consumerHighWatermark = consumerHighWatermark;
+      return this;
+    }
+
+    /**
+     * Sets how many waiting messages a paused consumer must drop to before it resumes
+     * Default is 0, which resumes once everything received was handled
+     */
+    public Builder consumerLowWatermark(int consumerLowWatermark) {
+      this.consumerLowWatermark = consumerLowWatermark;
+      return this;
+    }
+
+    /**
+     * Sets the server load (fraction of the 50ms tick budget) above which message handling is throttled
+     * Above it consumers pause earlier and best-effort subscriptions drop their messages, until the load recovers
+     * Default is 0.8, 0 disables throttling
+     */
+    public Builder loadThrottleThreshold(double loadThrottleThreshold) {
+      this.loadThrottleThreshold = loadThrottleThreshold;
+      return this;
+    }
+
+    /**
+     * Sets what runs the library's async work (publishes, acks, pausing consumers, binding actions)
+     * The platform scheduler is then only used for main thread work, so latency is the same on every platform
+     * Default is FIXED
+     */
+    public Builder asyncExecutorType(AsyncExecutorType asyncExecutorType) {
+      this.asyncExecutorType = asyncExecutorType;
+      return this;
+    }
+
+    /**
+     * Sets the thread count of the FIXED and FORK_JOIN async executors, shared by clients asking for the same size
+     * Default is 0, which uses the number of processors (at least 2)
+     */
+    public Builder asyncThreads(int asyncThreads) {
+      this.asyncThreads = asyncThreads;
+      return this;
+    }
+
+    /**
+     * Sets how many milliseconds of each tick main thread listeners may use together
+     * Tasks left when the budget runs out wait for the next tick, the budget shrinks to a quarter under load
+     * Default is 10, 0 runs every task as soon as the scheduler allows
+     */
+    public Builder mainThreadBudget(long mainThreadBudget) {
+      this.mainThreadBudget = mainThreadBudget;
+      return this;
+    }
+
+    /**
+     * Enables the blocking watchdog, reporting join()/get() on unfinished futures from the main thread and
+     * sampling main thread listeners still running after this many milliseconds
+     * Meant for development, reports are logged and available from RabbitMQClient#getWatchdog()
+     * Default is 0, which disables the watchdog
+     */
+    public Builder mainThreadWatchdogThreshold(long mainThreadWatchdogThreshold) {
+      this.mainThreadWatchdogThreshold = mainThreadWatchdogThreshold;
+      return this;
+    }
+
+    /**
+     * Combines host/port and the added addresses into one ordered, de-duplicated node list
+     */
+    private List<String> resolveAddresses() {
+      Set<String> resolved = new LinkedHashSet<>();
+      if (host != null && !host.isEmpty() && port > 0) {
+        resolved.add(host + ":" + port);
+      }
+      resolved.addAll(addresses);
+      return new ArrayList<>(resolved);
+    }
+
     public RabbitMQConfig build() {
       // Validate required fields
-      if (host == null || host.isEmpty()) {
-        throw new IllegalStateException("Host must be configured");
+      if (addresses.isEmpty()) {
+        if (host == null || host.isEmpty()) {
+          throw new IllegalStateException("Host must be configured");
+        }
+        if (port <= 0) {
+          throw new IllegalStateException("Port must be configured");
+        }
       }
-      if (port <= 0) {
-        throw new IllegalStateException("Port must be configured");
+      for (String address : addresses) {
+        int separator = address.lastIndexOf(':');
+        try {
+          if (separator <= 0 || Integer.parseInt(address.substring(separator + 1)) <= 0) {
+            throw new IllegalStateException("Address must be in host:port form: " + address);
+          }
+        } catch (NumberFormatException e) {
+          throw new IllegalStateException("Address must be in host:port form: " + address);
+        }
       }
       if (username == null || username.isEmpty()) {
         throw new IllegalStateException("Username must be configured");
@@ -539,6 +1256,75 @@ public class RabbitMQConfig {
       if (networkRecoveryInterval <= 0) {
         throw new IllegalStateException("Network recovery interval must be configured");
       }
+      if (recoveryMaxDelay <= 0) {
+        throw new IllegalStateException("Recovery max delay must be positive");
+      }
+      if (recoveryConcurrency <= 0) {
+        throw new IllegalStateException("Recovery concurrency must be positive");
+      }
+      if (failoverDelay < 0) {
+        throw new IllegalStateException("Failover delay must not be negative");
+      }
+      if (blockedPublishPolicy == null) {
+        throw new IllegalStateException("Blocked publish policy must not be null");
+      }
+      if (blockedPublishPolicy == BlockedPublishPolicy.BUFFER && blockedPublishBufferSize <= 0) {
+        throw new IllegalStateException("Blocked publish buffer size must be positive");
+      }
+      if (healthCheckInterval < 0) {
+        throw new IllegalStateException("Health check interval must not be negative");
+      }
+      if (healthDegradedThreshold <= 0) {
+        throw new IllegalStateException("Health degraded threshold must be positive");
+      }
+      if (nioThreads <= 0) {
+        throw new IllegalStateException("NIO threads must be positive");
+      }
+      if (consumerThreads < 0) {
+        throw new IllegalStateException("Consumer threads must not be negative");
+      }
+      if (consumerChannelPoolSize <= 0) {
+        throw new IllegalStateException("Consumer channel pool size must be positive");
+      }
+      if (publishWeight <= 0) {
+        throw new IllegalStateException("Publish weight must be positive");
+      }
+      if (publishRateLimit < 0) {
+        throw new IllegalStateException("Publish rate limit must not be negative");
+      }
+      if (publishConcurrency <= 0) {
+        throw new IllegalStateException("Publish concurrency must be positive");
+      }
+      if (retryAttempts < 0) {
+        throw new IllegalStateException("Retry attempts must not be negative");
+      }
+      if (retryInitialDelay <= 0) {
+        throw new IllegalStateException("Retry initial delay must be positive");
+      }
+      if (retryBackoffMultiplier < 1) {
+        throw new IllegalStateException("Retry backoff multiplier must be at least 1");
+      }
+      if (consumerHighWatermark < 0) {
+        throw new IllegalStateException("Consumer high watermark must not be negative");
+      }
+      if (consumerLowWatermark < 0 || (consumerHighWatermark > 0 && consumerLowWatermark >= consumerHighWatermark)) {
+        throw new IllegalStateException("Consumer low watermark must be below the high watermark");
+      }
+      if (loadThrottleThreshold < 0 || loadThrottleThreshold >= 1) {
+        throw new IllegalStateException("Load throttle threshold must be between 0 and 1");
+      }
+      if (asyncExecutorType == null) {
+        throw new IllegalStateException("Async executor type must not be null");
+      }
+      if (asyncThreads < 0) {
+        throw new IllegalStateException("Async threads must not be negative");
+      }
+      if (mainThreadBudget < 0) {
+        throw new IllegalStateException("Main thread budget must not be negative");
+      }
+      if (mainThreadWatchdogThreshold < 0) {
+        throw new IllegalStateException("Main thread watchdog threshold must not be negative");
+      }
 
       return new RabbitMQConfig(this);
     }
@@ -0,0 +1,344 @@
+package io.hydrodevelopments.celesmq.connection;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Command;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Periodically measures broker round-trip latency and derives a health state from it
+ * <p>
+ * Each probe is a passive exchange declare on a dedicated channel, which is a full round trip to the broker without
+ * side effects. Probes are timed by the shared scheduler and sent asynchronously, a probe without a reply within the
+ * degraded threshold counts as failed. The last {@value #WINDOW_SIZE} samples are kept as a rolling latency
+ * distribution. While no probes run (health checks disabled or the client stopped) the state follows the connection
+ * alone.
+ */
+public class BrokerHealthMonitor {
+
+  /**
+   * Number of latency samples kept in the rolling window
+   */
+  public static final int WINDOW_SIZE = 128;
+
+  /**
+   * Consecutive failed probes after which the broker is considered down
+   */
+  private static final int FAILURES_UNTIL_DOWN = 3;
+
+  /**
+   * Exchange that exists on every broker, used as the passive declare target
+   */
+  private static final String PROBE_EXCHANGE = "amq.direct";
+
+  private final RabbitMQConnectionManager connectionManager;
+  private final Logger logger;
+  private final long intervalMs;
+  private final long degradedThresholdMs;
+  private final List<Consumer<HealthState>> stateListeners = new CopyOnWriteArrayList<>();
+
+  private final long[] samples = new long[WINDOW_SIZE];
+  private int sampleIndex = 0;
+  private int sampleCount = 0;
+
+  private ScheduledFuture<?> task;
+  private Channel probeChannel;
+  // Reply of the last probe, a channel runs one RPC at a time so no probe is sent while it is outstanding
+  private CompletableFuture<Command> pendingReply;
+  private final AtomicBoolean probeInFlight = new AtomicBoolean();
+  private volatile int consecutiveFailures = 0;
+  private volatile long lastLatencyMicros = -1;
+  private volatile boolean probing = false;
+  private volatile HealthState state = HealthState.HEALTHY;
+
+  public BrokerHealthMonitor(RabbitMQConnectionManager connectionManager) {
+    this.connectionManager = connectionManager;
+    this.logger = connectionManager.getPlatform().getLogger();
+    this.intervalMs = connectionManager.getConfig().getHealthCheckInterval();
+    this.degradedThresholdMs = connectionManager.getConfig().getHealthDegradedThreshold();
+  }
+
+  /**
+   * Starts probing on the shared scheduler, does nothing if health checks are disabled
+   */
+  public synchronized void start() {
+    if (intervalMs <= 0 || task != null) {
+      return;
+    }
+
+    // A connection that just opened is healthy until a probe says otherwise
+    state = HealthState.HEALTHY;
+    probing = true;
+    task = SharedExecutors.scheduler().scheduleWithFixedDelay(this::tick, 0, intervalMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops probing and closes the probe channel
+   */
+  public synchronized void stop() {
+    probing = false;
+    if (task != null) {
+      task.cancel(false);
+      task = null;
+    }
+
+    if (probeChannel != null && probeChannel.isOpen()) {
+      try {
+        probeChannel.close();
+      } catch (Exception e) {
+        logger.log(Level.FINE, "Error closing health probe channel", e);
+      }
+    }
+    probeChannel = null;
+    pendingReply = null;
+    consecutiveFailures = 0;
+    state = HealthState.HEALTHY;
+  }
+
+  /**
+   * Hands a probe to an async thread unless the previous one has not finished, runs on the shared scheduler
+   */
+  private void tick() {
+    if (!probeInFlight.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      connectionManager.getPlatform().runAsync(this::probe);
+    } catch (RuntimeException e) {
+      // Scheduler unavailable, e.g. while the plugin is disabled
+      probeInFlight.set(false);
+    }
+  }
+
+  /**
+   * Sends a single probe, its reply updates the latency window and health state
+   */
+  private void probe() {
+    if (!probing) {
+      probeInFlight.set(false);
+      return;
+    }
+    if (!connectionManager.isConnected()) {
+      consecutiveFailures = FAILURES_UNTIL_DOWN;
+      updateState(HealthState.DOWN);
+      probeInFlight.set(false);
+      return;
+    }
+
+    // A blocked connection stops reading from the socket, so a probe would hang until unblocked
+    if (connectionManager.isBlocked()) {
+      updateState(HealthState.DEGRADED);
+      probeInFlight.set(false);
+      return;
+    }
+
+    // A broker that has not answered the last probe yet has not answered this one either
+    if (pendingReply != null && !pendingReply.isDone()) {
+      failed(new TimeoutException("Previous health probe still unanswered"));
+      return;
+    }
+
+    try {
+      if (probeChannel == null || !probeChannel.isOpen()) {
+        probeChannel = connectionManager.createChannel();
+      }
+
+      long start = System.nanoTime();
+      CompletableFuture<Command> reply = probeChannel.asyncCompletableRpc(
+        new AMQP.Exchange.Declare.Builder().exchange(PROBE_EXCHANGE).passive(true).build());
+      pendingReply = reply;
+
+      // The RPC itself only times out after minutes, the probe gives up at the degraded threshold
+      CompletableFuture<Command> deadline = reply.thenApply(command -> command);
+      ScheduledFuture<?> timeout = SharedExecutors.scheduler().schedule(() -> deadline.completeExceptionally(
+        new TimeoutException("No reply within " + degradedThresholdMs + "ms")), degradedThresholdMs,
+        TimeUnit.MILLISECONDS);
+
+      deadline.whenComplete((command, error) -> {
+        long elapsedMicros = (System.nanoTime() - start) / 1000;
+        timeout.cancel(false);
+        // Completed on the connection I/O thread or the scheduler, state listeners must run elsewhere
+        try {
+          connectionManager.getPlatform().runAsync(() -> finish(elapsedMicros, error));
+        } catch (RuntimeException e) {
+          probeInFlight.set(false);
+        }
+      });
+
+    } catch (IOException | RuntimeException e) {
+      failed(e);
+    }
+  }
+
+  private void finish(long elapsedMicros, Throwable error) {
+    if (error != null) {
+      failed(error);
+      return;
+    }
+    recordSample(elapsedMicros);
+    consecutiveFailures = 0;
+    updateState(getLatencyPercentile(0.9) > degradedThresholdMs ? HealthState.DEGRADED : HealthState.HEALTHY);
+    probeInFlight.set(false);
+  }
+
+  private void failed(Throwable error) {
+    consecutiveFailures++;
+    logger.log(Level.FINE, "Broker health probe failed", error);
+    updateState(consecutiveFailures >= FAILURES_UNTIL_DOWN ? HealthState.DOWN : HealthState.DEGRADED);
+    probeInFlight.set(false);
+  }
+
+  private synchronized void recordSample(long micros) {
+    samples[sampleIndex] = micros;
+    sampleIndex = (sampleIndex + 1) % WINDOW_SIZE;
+    sampleCount = Math.min(sampleCount + 1, WINDOW_SIZE);
+    lastLatencyMicros = micros;
+  }
+
+  private void updateState(HealthState newState) {
+    HealthState previous = state;
+    if (previous == newState) {
+      return;
+    }
+    state = newState;
+
+    if (newState == HealthState.HEALTHY) {
+      logger.info("RabbitMQ broker health: " + previous + " -> " + newState);
+    } else {
+      logger.warning("RabbitMQ broker health: " + previous + " -> " + newState
+        + " (p90 latency " + getLatencyPercentile(0.9) + "ms)");
+    }
+
+    for (Consumer<HealthState> listener : stateListeners) {
+      try {
+        listener.accept(newState);
+      } catch (Exception e) {
+        logger.log(Level.WARNING, "Error in broker health listener", e);
+      }
+    }
+  }
+
+  /**
+   * Registers a listener called whenever the health state changes
+   *
+   * @param listener receives the new state
+   */
+  public void onStateChange(Consumer<HealthState> listener) {
+    stateListeners.add(listener);
+  }
+
+  /**
+   * Gets the current broker health state
+   * <p>
+   * A lost connection is always {@link HealthState#DOWN}. Otherwise the last probe decides, or the connection's blocked
+   * flag if no probes run.
+   *
+   * @return health state
+   */
+  public HealthState getState() {
+    if (!connectionManager.isConnected()) {
+      return HealthState.DOWN;
+    }
+    if (!probing) {
+      return connectionManager.isBlocked() ? HealthState.DEGRADED : HealthState.HEALTHY;
+    }
+    return state;
+  }
+
+  /**
+   * Gets the most recent round-trip latency
+   *
+   * @return latency in milliseconds, or -1 if no probe has succeeded yet
+   */
+  public double getLastLatency() {
+    long micros = lastLatencyMicros;
+    return micros < 0 ? -1 : micros / 1000.0;
+  }
+
+  /**
+   * Gets a percentile of the rolling latency window
+   *
+   * @param percentile value between 0.0 and 1.0 (e.g. 0.99 for p99)
+   *
+   * @return latency in milliseconds, or -1 if no samples exist
+   */
+  public synchronized double getLatencyPercentile(double percentile) {
+    if (sampleCount == 0) {
+      return -1;
+    }
+    long[] sorted = Arrays.copyOf(samples, sampleCount);
+    Arrays.sort(sorted);
+    int index = (int) Math.ceil(percentile * sampleCount) - 1;
+    return sorted[Math.max(0, Math.min(index, sampleCount - 1))] / 1000.0;
+  }
+
+  /**
+   * Gets the average latency of the rolling window
+   *
+   * @return latency in milliseconds, or -1 if no samples exist
+   */
+  public synchronized double getAverageLatency() {
+    if (sampleCount == 0) {
+      return -1;
+    }
+    long total = 0;
+    for (int i = 0; i < sampleCount; i++) {
+      total += samples[i];
+    }
+    return total / (double) sampleCount / 1000.0;
+  }
+
+  /**
+   * Gets the number of samples currently in the rolling window
+   */
+  public synchronized int getSampleCount() {
+    return sampleCount;
+  }
+
+  /**
+   * Suggests a request timeout from measured latency
+   * <p>
+   * A request crosses the broker twice (request and reply), so the network share is estimated as four times the p99
+   * round trip, which leaves headroom for jitter. Until the first probe succeeds the degraded threshold is used as the
+   * round-trip estimate.
+   *
+   * @param processingBudgetMs time the remote handler is expected to need
+   *
+   * @return suggested timeout in milliseconds
+   */
+  public long suggestTimeout(long processingBudgetMs) {
+    double p99 = getLatencyPercentile(0.99);
+    double roundTrip = p99 >= 0 ? p99 : degradedThresholdMs;
+    return processingBudgetMs + (long) Math.ceil(roundTrip * 4);
+  }
+
+  /**
+   * Broker health derived from probe results
+   */
+  public enum HealthState {
+    /**
+     * Probes succeed with latency under the degraded threshold, or the connection is open and no probes run
+     */
+    HEALTHY,
+    /**
+     * Probes are slow, occasionally failing, or the broker has blocked the connection
+     */
+    DEGRADED,
+    /**
+     * The connection is closed or probes keep failing
+     */
+    DOWN
+  }
+}
@@ -0,0 +1,169 @@
+package io.hydrodevelopments.celesmq.connection;
+
+import io.hydrodevelopments.celesmq.config.RabbitMQConfig;
+import io.hydrodevelopments.celesmq.platform.Platform;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Logger;
+
+/**
+ * JVM-wide registry of connections shared between clients
+ * <p>
+ * Plugins on the same server usually talk to the same broker. Clients configured with
+ * {@link RabbitMQConfig.Builder#sharedConnection(boolean)} acquire their connection manager here, keyed by
+ * {@link RabbitMQConfig#getConnectionKey()}, so they multiplex one TCP connection instead of opening one each. The
+ * connection is reference counted: it opens on the first connect and closes when the last client releases it. It
+ * belongs to no plugin, so it logs to the "CelesMQ" logger and never uses a plugin's scheduler.
+ */
+public final class ConnectionHub {
+
+  private static final Map<RabbitMQConfig.ConnectionKey, SharedConnection> CONNECTIONS = new HashMap<>();
+
+  private ConnectionHub() {
+  }
+
+  /**
+   * Gets the shared connection manager for a configuration, creating it if this is the first client
+   * The first client's settings (recovery, health checks, threading) are used for the connection, its platform only for
+   * server-wide facts such as the platform type, so the connection outlives the first client's release
+   *
+   * @param platform the acquiring client's platform
+   * @param config   the acquiring client's configuration
+   *
+   * @return shared connection manager
+   */
+  public static RabbitMQConnectionManager acquire(Platform platform, RabbitMQConfig config) {
+    RabbitMQConfig.ConnectionKey key = config.getConnectionKey();
+    synchronized (CONNECTIONS) {
+      SharedConnection shared = CONNECTIONS.get(key);
+      if (shared == null) {
+        shared = new SharedConnection(key, new RabbitMQConnectionManager(new SharedPlatform(platform), config));
+        CONNECTIONS.put(key, shared);
+      } else {
+        platform.getLogger().info("Sharing existing RabbitMQ connection (" + (shared.references + 1) + " clients)");
+      }
+      shared.references++;
+      return shared.manager;
+    }
+  }
+
+  /**
+   * Connects a shared manager unless another client already did
+   *
+   * @param manager manager obtained from {@link #acquire(Platform, RabbitMQConfig)}
+   *
+   * @return true if the connection is open
+   */
+  public static boolean connect(RabbitMQConnectionManager manager) {
+    SharedConnection shared = find(manager);
+    if (shared == null) {
+      return false;
+    }
+    synchronized (shared) {
+      return manager.isConnected() || manager.connect();
+    }
+  }
+
+  /**
+   * Releases one client's reference, closing the connection when it was the last
+   *
+   * @param manager manager obtained from {@link #acquire(Platform, RabbitMQConfig)}
+   */
+  public static void release(RabbitMQConnectionManager manager) {
+    SharedConnection shared;
+    synchronized (CONNECTIONS) {
+      shared = find(manager);
+      if (shared == null || --shared.references > 0) {
+        return;
+      }
+      CONNECTIONS.remove(shared.key);
+    }
+
+    synchronized (shared) {
+      manager.disconnect();
+    }
+  }
+
+  /**
+   * Gets the number of clients holding a shared connection
+   *
+   * @param manager shared manager
+   *
+   * @return reference count, or 0 if the manager is not shared
+   */
+  public static int getReferenceCount(RabbitMQConnectionManager manager) {
+    synchronized (CONNECTIONS) {
+      SharedConnection shared = find(manager);
+      return shared != null ? shared.references : 0;
+    }
+  }
+
+  /**
+   * Gets the number of distinct shared connections currently open or acquired
+   */
+  public static int getConnectionCount() {
+    synchronized (CONNECTIONS) {
+      return CONNECTIONS.size();
+    }
+  }
+
+  private static SharedConnection find(RabbitMQConnectionManager manager) {
+    synchronized (CONNECTIONS) {
+      SharedConnection shared = CONNECTIONS.get(manager.getConfig().getConnectionKey());
+      return shared != null && shared.manager == manager ? shared : null;
+    }
+  }
+
+  /**
+   * Platform of a shared connection, detached from the plugin that created it
+   * The connection itself never needs the main thread, so all tasks run on the common pool
+   */
+  private static final class SharedPlatform implements Platform {
+    private static final Logger LOGGER = Logger.getLogger("CelesMQ");
+
+    private final PlatformType type;
+    private final String name;
+
+    SharedPlatform(Platform platform) {
+      this.type = platform.getType();
+      this.name = platform.getName();
+    }
+
+    @Override public Logger getLogger() {
+      return LOGGER;
+    }
+
+    @Override public void runSync(Runnable task) {
+      runAsync(task);
+    }
+
+    @Override public void runAsync(Runnable task) {
+      ForkJoinPool.commonPool().execute(task);
+    }
+
+    @Override public boolean hasMainThread() {
+      return false;
+    }
+
+    @Override public PlatformType getType() {
+      return type;
+    }
+
+    @Override public String getName() {
+      return name;
+    }
+  }
+
+  private static final class SharedConnection {
+    final RabbitMQConfig.ConnectionKey key;
+    final RabbitMQConnectionManager manager;
+    int references;
+
+    SharedConnection(RabbitMQConfig.ConnectionKey key, RabbitMQConnectionManager manager) {
+      this.key = key;
+      this.manager = manager;
+    }
+  }
+}
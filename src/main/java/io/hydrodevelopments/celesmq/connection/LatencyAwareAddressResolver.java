@@ -0,0 +1,132 @@
+package io.hydrodevelopments.celesmq.connection;
+
+import com.rabbitmq.client.Address;
+import com.rabbitmq.client.AddressResolver;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+/**
+ * Orders cluster nodes by measured TCP connect latency
+ * <p>
+ * The client asks the resolver for addresses on every connect and every recovery attempt. Each time, all nodes are
+ * probed in parallel and returned fastest first, with unreachable nodes moved to the end, so the connection lands on
+ * the lowest-latency healthy node and a dead node is skipped without waiting out its connect timeout.
+ */
+public class LatencyAwareAddressResolver implements AddressResolver {
+
+  private final List<Address> addresses;
+  private final int defaultPort;
+  private final int probeTimeoutMs;
+  private final Logger logger;
+  private final Map<Address, Long> lastLatencies = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a resolver over a fixed set of cluster nodes
+   *
+   * @param addresses      cluster node addresses
+   * @param defaultPort    port probed for addresses without one, 5671 when TLS is used
+   * @param probeTimeoutMs maximum time to wait for a node's TCP connect
+   * @param logger         logger for node selection messages
+   */
+  public LatencyAwareAddressResolver(List<Address> addresses, int defaultPort, int probeTimeoutMs, Logger logger) {
+    this.addresses = new ArrayList<>(addresses);
+    this.defaultPort = defaultPort;
+    this.probeTimeoutMs = probeTimeoutMs;
+    this.logger = logger;
+  }
+
+  @Override public List<Address> getAddresses() throws IOException {
+    ExecutorService probeExecutor = Executors.newFixedThreadPool(addresses.size(), runnable -> {
+      Thread thread = new Thread(runnable, "CelesMQ-NodeProbe");
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    try {
+      List<CompletableFuture<Void>> probes = new ArrayList<>();
+      for (Address address : addresses) {
+        probes.add(CompletableFuture.runAsync(() -> lastLatencies.put(address, probe(address)), probeExecutor));
+      }
+      CompletableFuture.allOf(probes.toArray(new CompletableFuture[0])).join();
+    } finally {
+      probeExecutor.shutdownNow();
+    }
+
+    List<Address> ordered = new ArrayList<>(addresses);
+    ordered.sort(Comparator.comparingLong(address -> {
+      long latency = lastLatencies.getOrDefault(address, -1L);
+      return latency < 0 ? Long.MAX_VALUE : latency;
+    }));
+
+    logger.info("RabbitMQ node order by latency: " + describe(ordered));
+    return ordered;
+  }
+
+  /**
+   * Keeps the latency order instead of the client's default random shuffle
+   */
+  @Override public List<Address> maybeShuffle(List<Address> input) {
+    return input;
+  }
+
+  /**
+   * Measures the TCP connect time to a node
+   *
+   * @return latency in microseconds, or -1 if the node is unreachable
+   */
+  private long probe(Address address) {
+    int port = address.getPort() > 0 ? address.getPort() : defaultPort;
+    long start = System.nanoTime();
+    try (Socket socket = new Socket()) {
+      socket.connect(new InetSocketAddress(address.getHost(), port), probeTimeoutMs);
+      return (System.nanoTime() - start) / 1000;
+    } catch (IOException e) {
+      return -1;
+    }
+  }
+
+  private String describe(List<Address> ordered) {
+    StringBuilder builder = new StringBuilder();
+    for (Address address : ordered) {
+      if (builder.length() > 0) {
+        builder.append(", ");
+      }
+      long latency = lastLatencies.getOrDefault(address, -1L);
+      builder.append(address).append(latency < 0 ? " (unreachable)" : " (" + latency / 1000.0 + "ms)");
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Gets the latency measured for each node during the last resolution
+   *
+   * @return map of "host:port" to latency in milliseconds, -1 for unreachable nodes
+   */
+  public Map<String, Double> getNodeLatencies() {
+    Map<String, Double> result = new LinkedHashMap<>();
+    for (Address address : addresses) {
+      long latency = lastLatencies.getOrDefault(address, -1L);
+      result.put(address.toString(), latency < 0 ? -1 : latency / 1000.0);
+    }
+    return result;
+  }
+
+  /**
+   * Gets the number of configured nodes
+   */
+  public int getNodeCount() {
+    return addresses.size();
+  }
+}
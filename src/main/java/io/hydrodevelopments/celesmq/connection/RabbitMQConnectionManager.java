@@ -1,15 +1,20 @@
 package io.hydrodevelopments.celesmq.connection;
 
 import com.rabbitmq.client.*;
+import com.rabbitmq.client.impl.nio.NioParams;
 import io.hydrodevelopments.celesmq.config.RabbitMQConfig;
+import io.hydrodevelopments.celesmq.messaging.FairPublishScheduler;
+import io.hydrodevelopments.celesmq.metrics.RabbitMQMetrics;
 import io.hydrodevelopments.celesmq.platform.Platform;
 
-import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
-import javax.net.ssl.TrustManagerFactory;
-import java.io.FileInputStream;
+import javax.net.ssl.SSLSocket;
 import java.io.IOException;
-import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -19,17 +24,36 @@ import java.util.logging.Logger;
  */
 public class RabbitMQConnectionManager {
 
+  /**
+   * Upper bound for probing a cluster node's TCP connect latency
+   */
+  private static final int NODE_PROBE_TIMEOUT_MS = 2000;
+
   private final Platform platform;
   private final RabbitMQConfig config;
   private final Logger logger;
+  private final RabbitMQMetrics metrics = new RabbitMQMetrics();
+  private final List<Runnable> unblockedCallbacks = new CopyOnWriteArrayList<>();
+  private final List<Runnable> recoveryCallbacks = new CopyOnWriteArrayList<>();
+  private final BrokerHealthMonitor healthMonitor;
+  private LatencyAwareAddressResolver addressResolver;
+  private RecoveryBackoff recoveryBackoff;
+  private FairPublishScheduler publishScheduler;
+  private volatile long connectionLostAt;
   private Connection connection;
   private Channel channel;
   private boolean isShuttingDown = false;
 
+  // Broker flow control state (connection.blocked / connection.unblocked)
+  private volatile boolean blocked = false;
+  private volatile String blockedReason;
+  private volatile long blockedSince;
+
   public RabbitMQConnectionManager(Platform platform, RabbitMQConfig config) {
     this.platform = platform;
     this.config = config;
     this.logger = platform.getLogger();
+    this.healthMonitor = new BrokerHealthMonitor(this);
   }
 
   /**
@@ -48,6 +72,9 @@ public class RabbitMQConnectionManager {
       factory.setConnectionTimeout(config.getConnectionTimeout());
       factory.setAutomaticRecoveryEnabled(config.isAutomaticRecoveryEnabled());
       factory.setNetworkRecoveryInterval(config.getNetworkRecoveryInterval());
+      // Consumers re-create their own subscriptions in parallel, see RabbitMQConsumer
+      factory.setTopologyRecoveryEnabled(!config.isSubscriptionRecovery());
+      configureThreading(factory);
 
       // Configure SSL/TLS if enabled
       if (config.isUseSsl()) {
@@ -55,21 +82,55 @@ public class RabbitMQConnectionManager {
       }
 
       // Add connection recovery listeners
-      factory.setRecoveryDelayHandler(recoveryAttempts -> config.getNetworkRecoveryInterval());
+      // With several nodes another one is usually up, so the first attempt fails over almost immediately
+      recoveryBackoff = new RecoveryBackoff(config.getNetworkRecoveryInterval(), config.getRecoveryMaxDelay(),
+        config.isCluster() ? config.getFailoverDelay() : -1, config.getRecoveryConcurrency());
+      factory.setRecoveryDelayHandler(recoveryBackoff);
 
-      connection = factory.newConnection();
+      if (config.isCluster()) {
+        List<Address> addresses = new ArrayList<>();
+        for (String address : config.getAddresses()) {
+          addresses.add(Address.parseAddress(address));
+        }
+        // Addresses without a port connect to the TLS port when SSL is on, so probe that one
+        int defaultPort = config.isUseSsl() ? ConnectionFactory.DEFAULT_AMQP_OVER_SSL_PORT
+          : ConnectionFactory.DEFAULT_AMQP_PORT;
+        addressResolver = new LatencyAwareAddressResolver(addresses, defaultPort,
+          Math.min(config.getConnectionTimeout(), NODE_PROBE_TIMEOUT_MS), logger);
+        connection = factory.newConnection(addressResolver);
+      } else {
+        connection = factory.newConnection();
+      }
       channel = connection.createChannel();
 
       // Add connection listeners
       connection.addShutdownListener(cause -> {
         if (!isShuttingDown && !cause.isInitiatedByApplication()) {
           logger.log(Level.WARNING, "RabbitMQ connection lost: " + cause.getMessage());
+          connectionLostAt = System.currentTimeMillis();
+        }
+        // A closed connection can no longer be blocked, release anything waiting on it
+        markUnblocked();
+      });
+
+      connection.addBlockedListener(new BlockedListener() {
+        @Override public void handleBlocked(String reason) {
+          markBlocked(reason);
+        }
+
+        @Override public void handleUnblocked() {
+          markUnblocked();
         }
       });
 
       ((Recoverable) connection).addRecoveryListener(new RecoveryListener() {
         @Override public void handleRecovery(Recoverable recoverable) {
-          logger.info("RabbitMQ connection recovered successfully");
+          recoveryBackoff.reset();
+          long recoveryTime = System.currentTimeMillis() - connectionLostAt;
+          metrics.recordRecovery(recoveryTime);
+          logger.info("RabbitMQ connection recovered successfully in " + recoveryTime + "ms (node "
+            + getConnectedAddress() + ")");
+          runRecoveryCallbacks();
         }
 
         @Override public void handleRecoveryStarted(Recoverable recoverable) {
@@ -77,7 +138,8 @@ public class RabbitMQConnectionManager {
         }
       });
 
-      logger.info("Successfully connected to RabbitMQ server at " + config.getHost() + ":" + config.getPort());
+      logger.info("Successfully connected to RabbitMQ server at " + getConnectedAddress());
+      healthMonitor.start();
       return true;
 
     } catch (IOException | TimeoutException e) {
@@ -127,11 +189,149 @@ public class RabbitMQConnectionManager {
     return connection != null && connection.isOpen();
   }
 
+  /**
+   * Gets the broker node this connection is currently attached to
+   *
+   * @return "host:port" of the connected node, or null if not connected
+   */
+  public String getConnectedAddress() {
+    if (connection == null) {
+      return null;
+    }
+    return connection.getAddress().getHostAddress() + ":" + connection.getPort();
+  }
+
+  /**
+   * Gets the latency measured to each cluster node when the connection was last placed
+   *
+   * @return map of "host:port" to latency in milliseconds (-1 if unreachable), empty for a single node
+   */
+  public Map<String, Double> getNodeLatencies() {
+    return addressResolver != null ? addressResolver.getNodeLatencies() : Collections.emptyMap();
+  }
+
+  /**
+   * Checks if the broker has blocked this connection (memory or disk alarm)
+   * Publishes written to the socket while blocked stall until the broker unblocks
+   *
+   * @return true if blocked, false otherwise
+   */
+  public boolean isBlocked() {
+    return blocked;
+  }
+
+  /**
+   * Gets the reason the broker gave for blocking the connection
+   *
+   * @return blocked reason, or null if not blocked
+   */
+  public String getBlockedReason() {
+    return blocked ? blockedReason : null;
+  }
+
+  /**
+   * Gets how long the connection has been blocked so far
+   *
+   * @return blocked duration in milliseconds, or 0 if not blocked
+   */
+  public long getBlockedDurationMs() {
+    return blocked ? System.currentTimeMillis() - blockedSince : 0;
+  }
+
+  /**
+   * Registers a callback invoked when the connection leaves the blocked state
+   * Callbacks run on the connection's I/O thread and must not publish directly
+   *
+   * @param callback the callback to run
+   */
+  public void onUnblocked(Runnable callback) {
+    unblockedCallbacks.add(callback);
+  }
+
+  /**
+   * Removes a callback registered with {@link #onUnblocked(Runnable)}
+   *
+   * @param callback the callback to remove
+   */
+  public void removeUnblockedCallback(Runnable callback) {
+    unblockedCallbacks.remove(callback);
+  }
+
+  /**
+   * Registers a callback invoked after the connection recovered
+   * Callbacks run on a background thread and may use the connection
+   *
+   * @param callback the callback to run
+   */
+  public void onRecovery(Runnable callback) {
+    recoveryCallbacks.add(callback);
+  }
+
+  /**
+   * Removes a callback registered with {@link #onRecovery(Runnable)}
+   *
+   * @param callback the callback to remove
+   */
+  public void removeRecoveryCallback(Runnable callback) {
+    recoveryCallbacks.remove(callback);
+  }
+
+  /**
+   * Runs recovery callbacks off the client's recovery thread, they make blocking calls on the connection
+   */
+  private void runRecoveryCallbacks() {
+    if (recoveryCallbacks.isEmpty()) {
+      return;
+    }
+    SharedExecutors.daemonThreadFactory("CelesMQ-Recovery").newThread(() -> {
+      for (Runnable callback : recoveryCallbacks) {
+        try {
+          callback.run();
+        } catch (Exception e) {
+          logger.log(Level.WARNING, "Error in connection recovery callback", e);
+        }
+      }
+    }).start();
+  }
+
+  private synchronized void markBlocked(String reason) {
+    if (blocked) {
+      return;
+    }
+    blockedReason = reason;
+    blockedSince = System.currentTimeMillis();
+    blocked = true;
+    logger.warning("RabbitMQ broker blocked the connection (" + reason + "), applying "
+      + config.getBlockedPublishPolicy() + " publish policy");
+  }
+
+  private synchronized void markUnblocked() {
+    if (!blocked) {
+      return;
+    }
+    long duration = System.currentTimeMillis() - blockedSince;
+    blocked = false;
+    metrics.recordBlocked(duration);
+    logger.info("RabbitMQ broker unblocked the connection after " + duration + "ms");
+
+    for (Runnable callback : unblockedCallbacks) {
+      try {
+        callback.run();
+      } catch (Exception e) {
+        logger.log(Level.WARNING, "Error in connection unblocked callback", e);
+      }
+    }
+  }
+
   /**
    * Closes the connection and channel gracefully
    */
   public void disconnect() {
     isShuttingDown = true;
+    healthMonitor.stop();
+    if (recoveryBackoff != null) {
+      recoveryBackoff.reset();
+    }
 
     try {
       if (channel != null && channel.isOpen()) {
@@ -152,74 +352,62 @@ public class RabbitMQConnectionManager {
     }
   }
 
+  /**
+   * Points the connection factory at the executors shared by all connections in the JVM
+   * Without this each connection creates its own heartbeat scheduler, consumer pool and reader thread
+   *
+   * @param factory the ConnectionFactory to configure
+   */
+  private void configureThreading(ConnectionFactory factory) {
+    factory.setThreadFactory(SharedExecutors.connectionThreadFactory());
+    factory.setHeartbeatExecutor(SharedExecutors.heartbeatExecutor());
+
+    if (config.getConsumerThreads() > 0 || config.isUseVirtualThreads()) {
+      int threads = config.getConsumerThreads() > 0
+        ? config.getConsumerThreads()
+        : Runtime.getRuntime().availableProcessors() * 2;
+      factory.setSharedExecutor(SharedExecutors.consumerExecutor(threads, config.isUseVirtualThreads(), logger));
+    }
+
+    if (config.isUseNio()) {
+      NioParams nioParams = new NioParams();
+      nioParams.setNbIoThreads(config.getNioThreads());
+      nioParams.setNioExecutor(SharedExecutors.nioExecutor());
+      nioParams.setThreadFactory(SharedExecutors.connectionThreadFactory());
+      factory.setNioParams(nioParams);
+      factory.useNio();
+    }
+  }
+
   /**
    * Configures SSL/TLS for the connection factory
+   * The SSLContext comes from a JVM-wide cache so reconnects skip store loading and can resume TLS sessions
    *
    * @param factory the ConnectionFactory to configure
    */
   private void configureSSL(ConnectionFactory factory) {
     try {
-      // Setup default SSL context if no custom stores are provided
-      if (config.getTrustStorePath() == null && config.getKeyStorePath() == null) {
-        if (config.isValidateServerCertificate()) {
-          // Use default SSL with server certificate validation
-          factory.useSslProtocol(config.getSslProtocol());
-          logger.info("SSL/TLS enabled with protocol: " + config.getSslProtocol());
-        } else {
-          // Disable certificate validation
-          SSLContext sslContext = SSLContext.getInstance(config.getSslProtocol());
-          sslContext.init(null, new javax.net.ssl.TrustManager[]{new javax.net.ssl.X509TrustManager() {
-            public java.security.cert.X509Certificate[] getAcceptedIssuers() {
-              return null;
-            }
-
-            public void checkClientTrusted(java.security.cert.X509Certificate[] certs, String authType) {
-            }
-
-            public void checkServerTrusted(java.security.cert.X509Certificate[] certs, String authType) {
-            }
-          }
-          }, null);
-          factory.useSslProtocol(sslContext);
-          logger.warning("SSL/TLS enabled WITHOUT server certificate validation - NOT RECOMMENDED FOR PRODUCTION!");
-        }
-        return;
-      }
-
-      // Advanced SSL setup with custom trust store and/or client certificates
-      SSLContext sslContext = SSLContext.getInstance(config.getSslProtocol());
+      SSLContext sslContext = SslContextCache.get(config, logger);
+      factory.useSslProtocol(sslContext);
 
-      // Configure trust manager if trust store is provided
-      TrustManagerFactory tmf = null;
-      if (config.getTrustStorePath() != null) {
-        KeyStore trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
-        try (FileInputStream trustStoreStream = new FileInputStream(config.getTrustStorePath())) {
-          trustStore.load(trustStoreStream,
-            config.getTrustStorePassword() != null ? config.getTrustStorePassword().toCharArray() : null);
+      // Measure TCP connect plus TLS handshake, and whether the session was resumed
+      factory.setSocketConfigurator(SocketConfigurators.defaultConfigurator().andThen(socket -> {
+        if (socket instanceof SSLSocket) {
+          long start = System.currentTimeMillis();
+          ((SSLSocket) socket).addHandshakeCompletedListener(event -> {
+            long elapsed = System.currentTimeMillis() - start;
+            boolean resumed = event.getSession().getCreationTime() < start;
+            metrics.recordTlsHandshake(elapsed, resumed);
+          });
         }
-        tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
-        tmf.init(trustStore);
-        logger.info("SSL/TLS: Loaded custom trust store from: " + config.getTrustStorePath());
-      }
+      }));
 
-      KeyManagerFactory kmf = null;
-      if (config.getKeyStorePath() != null) {
-        KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
-        try (FileInputStream keyStoreStream = new FileInputStream(config.getKeyStorePath())) {
-          keyStore.load(keyStoreStream,
-            config.getKeyStorePassword() != null ? config.getKeyStorePassword().toCharArray() : null);
-        }
-        kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
-        kmf.init(keyStore, config.getKeyStorePassword() != null ? config.getKeyStorePassword().toCharArray() : null);
-        logger.info("SSL/TLS: Loaded client key store from: " + config.getKeyStorePath() + " (mTLS enabled)");
+      if (!config.isValidateServerCertificate() && config.getTrustStorePath() == null) {
+        logger.warning("SSL/TLS enabled WITHOUT server certificate validation - NOT RECOMMENDED FOR PRODUCTION!");
+      } else {
+        logger.info("SSL/TLS enabled with protocol: " + config.getSslProtocol());
       }
 
-      // Initialize SSL context
-      sslContext.init(kmf != null ? kmf.getKeyManagers() : null, tmf != null ? tmf.getTrustManagers() : null, null);
-
-      factory.useSslProtocol(sslContext);
-      logger.info("SSL/TLS enabled with protocol: " + config.getSslProtocol());
-
     } catch (Exception e) {
       logger.log(Level.SEVERE, "Failed to configure SSL/TLS", e);
       throw new RuntimeException("SSL/TLS configuration failed", e);
@@ -227,7 +415,7 @@ public class RabbitMQConnectionManager {
   }
 
   /**
-   * Gets the platform instance
+   * Gets the platform instance, for a shared connection a neutral one owned by {@link ConnectionHub}
    *
    * @return Platform instance
    */
@@ -243,4 +431,34 @@ public class RabbitMQConnectionManager {
   public RabbitMQConfig getConfig() {
     return config;
   }
+
+  /**
+   * Gets the broker health monitor for this connection
+   *
+   * @return BrokerHealthMonitor instance
+   */
+  public BrokerHealthMonitor getHealthMonitor() {
+    return healthMonitor;
+  }
+
+  /**
+   * Gets the scheduler that shares this connection's publish bandwidth between clients
+   *
+   * @return FairPublishScheduler instance
+   */
+  public synchronized FairPublishScheduler getPublishScheduler() {
+    if (publishScheduler == null) {
+      publishScheduler = new FairPublishScheduler(metrics, logger);
+    }
+    return publishScheduler;
+  }
+
+  /**
+   * Gets the metrics recorded for this connection
+   *
+   * @return RabbitMQMetrics instance
+   */
+  public RabbitMQMetrics getMetrics() {
+    return metrics;
+  }
 }
\ No newline at end of file
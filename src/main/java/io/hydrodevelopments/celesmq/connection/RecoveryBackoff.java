@@ -0,0 +1,105 @@
+package io.hydrodevelopments.celesmq.connection;
+
+import com.rabbitmq.client.RecoveryDelayHandler;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Recovery delay with exponential backoff, decorrelated jitter and a JVM-wide concurrency limit
+ * <p>
+ * Each delay is drawn uniformly between the base interval and three times the previous delay, capped at the maximum.
+ * Instances that lost the broker at the same moment therefore spread their attempts out instead of reconnecting in
+ * lockstep. On top of that, at most a configured number of connections in this JVM run a recovery attempt at once.
+ */
+public class RecoveryBackoff implements RecoveryDelayHandler {
+
+  // Limiters shared by every connection in the JVM that uses the same concurrency limit
+  private static final Map<Integer, Semaphore> LIMITERS = new ConcurrentHashMap<>();
+
+  private final long baseDelayMs;
+  private final long maxDelayMs;
+  private final long failoverDelayMs;
+  private final Semaphore limiter;
+  private final AtomicBoolean holdingPermit = new AtomicBoolean(false);
+  private long previousDelayMs;
+
+  /**
+   * Creates a backoff policy
+   *
+   * @param baseDelayMs     minimum delay between attempts
+   * @param maxDelayMs      maximum delay between attempts
+   * @param failoverDelayMs upper bound for the first attempt's delay, or -1 to use the regular backoff
+   * @param concurrency     maximum concurrent recovery attempts in this JVM
+   */
+  public RecoveryBackoff(long baseDelayMs, long maxDelayMs, long failoverDelayMs, int concurrency) {
+    this.baseDelayMs = baseDelayMs;
+    this.maxDelayMs = Math.max(maxDelayMs, baseDelayMs);
+    this.failoverDelayMs = failoverDelayMs;
+    this.limiter = LIMITERS.computeIfAbsent(concurrency, Semaphore::new);
+    this.previousDelayMs = baseDelayMs;
+  }
+
+  /**
+   * Called by the client before each recovery attempt (0 for the first)
+   * <p>
+   * Sleeps for the jittered delay here and then waits for a recovery permit, so the returned delay is always zero.
+   */
+  @Override public long getDelay(int recoveryAttempts) {
+    // The previous attempt failed, let another connection try
+    releasePermit();
+
+    long delay = nextDelay(recoveryAttempts);
+    try {
+      if (delay > 0) {
+        Thread.sleep(delay);
+      }
+      limiter.acquire();
+      holdingPermit.set(true);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return 0;
+  }
+
+  /**
+   * Computes the next delay using decorrelated jitter
+   *
+   * @param recoveryAttempts attempts made so far in this recovery
+   *
+   * @return delay in milliseconds
+   */
+  synchronized long nextDelay(int recoveryAttempts) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+
+    if (recoveryAttempts == 0) {
+      previousDelayMs = baseDelayMs;
+      if (failoverDelayMs >= 0) {
+        // Another node is usually reachable, keep failover fast but still spread out
+        return failoverDelayMs > 0 ? random.nextLong(failoverDelayMs + 1) : 0;
+      }
+    }
+
+    long upper = Math.min(maxDelayMs, previousDelayMs * 3);
+    long delay = upper > baseDelayMs ? random.nextLong(baseDelayMs, upper + 1) : baseDelayMs;
+    previousDelayMs = delay;
+    return delay;
+  }
+
+  /**
+   * Ends the current recovery, releasing the permit and resetting the backoff
+   */
+  public synchronized void reset() {
+    releasePermit();
+    previousDelayMs = baseDelayMs;
+  }
+
+  private void releasePermit() {
+    if (holdingPermit.compareAndSet(true, false)) {
+      limiter.release();
+    }
+  }
+}
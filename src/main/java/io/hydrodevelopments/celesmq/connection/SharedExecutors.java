@@ -0,0 +1,191 @@
+package io.hydrodevelopments.celesmq.connection;
+
+import io.hydrodevelopments.celesmq.config.RabbitMQConfig;
+import io.hydrodevelopments.celesmq.platform.Platform;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Executors and thread factories shared by every connection in the JVM
+ * <p>
+ * By default the amqp-client gives each connection its own heartbeat scheduler and consumer work pool. Handing every
+ * connection the same instances keeps the thread count flat as more managers connect. All threads are daemon threads,
+ * so nothing here blocks server shutdown.
+ */
+public final class SharedExecutors {
+
+  private static final ThreadFactory CONNECTION_THREAD_FACTORY = daemonThreadFactory("CelesMQ-AMQP");
+  private static final Map<String, ExecutorService> CONSUMER_EXECUTORS = new ConcurrentHashMap<>();
+  private static final Map<String, ExecutorService> ASYNC_EXECUTORS = new ConcurrentHashMap<>();
+
+  private static volatile ScheduledExecutorService heartbeatExecutor;
+  private static volatile ExecutorService nioExecutor;
+  private static volatile ScheduledExecutorService scheduler;
+
+  private SharedExecutors() {
+  }
+
+  /**
+   * Gets the thread factory used for connection I/O threads
+   *
+   * @return shared daemon thread factory
+   */
+  public static ThreadFactory connectionThreadFactory() {
+    return CONNECTION_THREAD_FACTORY;
+  }
+
+  /**
+   * Gets the single scheduler that sends heartbeats for all connections
+   *
+   * @return shared heartbeat scheduler
+   */
+  public static ScheduledExecutorService heartbeatExecutor() {
+    if (heartbeatExecutor == null) {
+      synchronized (SharedExecutors.class) {
+        if (heartbeatExecutor == null) {
+          heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("CelesMQ-Heartbeat"));
+        }
+      }
+    }
+    return heartbeatExecutor;
+  }
+
+  /**
+   * Gets the scheduler for the library's short timers, such as batch and coalescing flushes
+   * Tasks must only hand work off to another executor, never block on it
+   *
+   * @return shared scheduler
+   */
+  public static ScheduledExecutorService scheduler() {
+    if (scheduler == null) {
+      synchronized (SharedExecutors.class) {
+        if (scheduler == null) {
+          scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("CelesMQ-Scheduler"));
+        }
+      }
+    }
+    return scheduler;
+  }
+
+  /**
+   * Gets the executor that runs NIO I/O loops for all connections in NIO mode
+   *
+   * @return shared NIO executor
+   */
+  public static ExecutorService nioExecutor() {
+    if (nioExecutor == null) {
+      synchronized (SharedExecutors.class) {
+        if (nioExecutor == null) {
+          nioExecutor = Executors.newCachedThreadPool(daemonThreadFactory("CelesMQ-NIO"));
+        }
+      }
+    }
+    return nioExecutor;
+  }
+
+  /**
+   * Gets a consumer dispatch executor shared by all connections asking for the same sizing
+   *
+   * @param threads        pool size, ignored when virtual threads are used
+   * @param virtualThreads whether to run each delivery on a virtual thread (Java 21+)
+   * @param logger         logger for the virtual thread fallback warning
+   *
+   * @return shared consumer executor
+   */
+  public static ExecutorService consumerExecutor(int threads, boolean virtualThreads, Logger logger) {
+    String key = virtualThreads ? "virtual" : "fixed-" + threads;
+    return CONSUMER_EXECUTORS.computeIfAbsent(key, k -> {
+      if (virtualThreads) {
+        ExecutorService virtual = newVirtualThreadExecutor();
+        if (virtual != null) {
+          return virtual;
+        }
+        logger.warning("Virtual threads are not available on this JVM (Java 21+ required), "
+          + "using a fixed consumer pool of " + threads + " threads");
+      }
+      return Executors.newFixedThreadPool(threads, daemonThreadFactory("CelesMQ-Consumer"));
+    });
+  }
+
+  /**
+   * Gets the executor for a client's async work, shared by all clients asking for the same type and size
+   *
+   * @param config   the client's configuration
+   * @param platform the client's platform, whose scheduler is used for {@link RabbitMQConfig.AsyncExecutorType#PLATFORM}
+   *
+   * @return async executor
+   */
+  public static Executor asyncExecutor(RabbitMQConfig config, Platform platform) {
+    RabbitMQConfig.AsyncExecutorType type = config.getAsyncExecutorType();
+    if (type == RabbitMQConfig.AsyncExecutorType.PLATFORM) {
+      return platform::runAsync;
+    }
+
+    int threads = config.getAsyncThreads() > 0
+      ? config.getAsyncThreads()
+      : Math.max(2, Runtime.getRuntime().availableProcessors());
+    String key = type == RabbitMQConfig.AsyncExecutorType.VIRTUAL ? "virtual" : type + "-" + threads;
+    return ASYNC_EXECUTORS.computeIfAbsent(key, k -> {
+      switch (type) {
+        case VIRTUAL:
+          ExecutorService virtual = newVirtualThreadExecutor();
+          if (virtual != null) {
+            return virtual;
+          }
+          platform.getLogger().warning("Virtual threads are not available on this JVM (Java 21+ required), "
+            + "using a fixed async pool of " + threads + " threads");
+          return Executors.newFixedThreadPool(threads, daemonThreadFactory("CelesMQ-Async"));
+        case FORK_JOIN:
+          // FIFO mode, tasks are independent and should run in submission order
+          AtomicInteger counter = new AtomicInteger();
+          return new ForkJoinPool(threads, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("CelesMQ-Async-" + counter.incrementAndGet());
+            return thread;
+          }, null, true);
+        default:
+          return Executors.newFixedThreadPool(threads, daemonThreadFactory("CelesMQ-Async"));
+      }
+    });
+  }
+
+  /**
+   * Creates a virtual-thread-per-task executor when the running JVM supports it
+   * The library targets Java 17, so the factory method is looked up reflectively
+   *
+   * @return executor, or null if virtual threads are unavailable
+   */
+  static ExecutorService newVirtualThreadExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Creates a thread factory producing named daemon threads
+   *
+   * @param prefix thread name prefix
+   *
+   * @return thread factory
+   */
+  public static ThreadFactory daemonThreadFactory(String prefix) {
+    AtomicInteger counter = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+}
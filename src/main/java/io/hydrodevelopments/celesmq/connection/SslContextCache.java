@@ -0,0 +1,167 @@
+package io.hydrodevelopments.celesmq.connection;
+
+import io.hydrodevelopments.celesmq.config.RabbitMQConfig;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * JVM-wide cache of SSLContexts keyed by the SSL settings that produce them
+ * <p>
+ * Building a context means reading and decoding the key and trust store files, which used to happen on every connect.
+ * A cached context is reused until one of its store files changes on disk. Reusing the same context also keeps its
+ * client session cache, so reconnects to the same broker resume the TLS session with an abbreviated handshake.
+ */
+public final class SslContextCache {
+
+  /**
+   * Maximum number of TLS sessions kept for resumption per context
+   */
+  private static final int SESSION_CACHE_SIZE = 256;
+
+  /**
+   * How long a TLS session stays resumable, in seconds
+   */
+  private static final int SESSION_TIMEOUT_SECONDS = 3600;
+
+  private static final Map<String, CachedContext> CACHE = new ConcurrentHashMap<>();
+
+  private SslContextCache() {
+  }
+
+  /**
+   * Gets the SSLContext for a configuration, building it only if missing or if a store file changed
+   *
+   * @param config the RabbitMQ configuration with SSL settings
+   * @param logger logger for store loading messages
+   *
+   * @return initialized SSLContext with session caching enabled
+   *
+   * @throws GeneralSecurityException if the context or stores cannot be initialized
+   * @throws IOException              if a store file cannot be read
+   */
+  public static SSLContext get(RabbitMQConfig config, Logger logger) throws GeneralSecurityException, IOException {
+    String key = keyOf(config);
+    long trustStoreModified = lastModified(config.getTrustStorePath());
+    long keyStoreModified = lastModified(config.getKeyStorePath());
+
+    synchronized (CACHE) {
+      CachedContext cached = CACHE.get(key);
+      if (cached != null
+        && cached.trustStoreModified == trustStoreModified
+        && cached.keyStoreModified == keyStoreModified) {
+        return cached.context;
+      }
+
+      if (cached != null) {
+        logger.info("SSL/TLS: Key or trust store changed on disk, rebuilding SSL context");
+      }
+      SSLContext context = build(config, logger);
+      CACHE.put(key, new CachedContext(context, trustStoreModified, keyStoreModified));
+      return context;
+    }
+  }
+
+  /**
+   * Drops all cached contexts, forcing the next connect to reload stores
+   */
+  public static void invalidateAll() {
+    CACHE.clear();
+  }
+
+  private static SSLContext build(RabbitMQConfig config, Logger logger) throws GeneralSecurityException, IOException {
+    SSLContext sslContext = SSLContext.getInstance(config.getSslProtocol());
+
+    TrustManager[] trustManagers = null;
+    if (config.getTrustStorePath() != null) {
+      KeyStore trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
+      try (FileInputStream trustStoreStream = new FileInputStream(config.getTrustStorePath())) {
+        trustStore.load(trustStoreStream,
+          config.getTrustStorePassword() != null ? config.getTrustStorePassword().toCharArray() : null);
+      }
+      TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+      tmf.init(trustStore);
+      trustManagers = tmf.getTrustManagers();
+      logger.info("SSL/TLS: Loaded custom trust store from: " + config.getTrustStorePath());
+    } else if (!config.isValidateServerCertificate()) {
+      trustManagers = new TrustManager[]{new TrustAllManager()};
+    }
+
+    KeyManagerFactory kmf = null;
+    if (config.getKeyStorePath() != null) {
+      KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+      try (FileInputStream keyStoreStream = new FileInputStream(config.getKeyStorePath())) {
+        keyStore.load(keyStoreStream,
+          config.getKeyStorePassword() != null ? config.getKeyStorePassword().toCharArray() : null);
+      }
+      kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+      kmf.init(keyStore, config.getKeyStorePassword() != null ? config.getKeyStorePassword().toCharArray() : null);
+      logger.info("SSL/TLS: Loaded client key store from: " + config.getKeyStorePath() + " (mTLS enabled)");
+    }
+
+    // Null trust managers select the JVM default trust store, which validates the server certificate
+    sslContext.init(kmf != null ? kmf.getKeyManagers() : null, trustManagers, null);
+
+    SSLSessionContext sessionContext = sslContext.getClientSessionContext();
+    if (sessionContext != null) {
+      sessionContext.setSessionCacheSize(SESSION_CACHE_SIZE);
+      sessionContext.setSessionTimeout(SESSION_TIMEOUT_SECONDS);
+    }
+    return sslContext;
+  }
+
+  private static String keyOf(RabbitMQConfig config) {
+    return String.join("|",
+      config.getSslProtocol(),
+      String.valueOf(config.getTrustStorePath()),
+      String.valueOf(Objects.hashCode(config.getTrustStorePassword())),
+      String.valueOf(config.getKeyStorePath()),
+      String.valueOf(Objects.hashCode(config.getKeyStorePassword())),
+      String.valueOf(config.isValidateServerCertificate()));
+  }
+
+  private static long lastModified(String path) {
+    return path != null ? new File(path).lastModified() : 0;
+  }
+
+  private static final class CachedContext {
+    final SSLContext context;
+    final long trustStoreModified;
+    final long keyStoreModified;
+
+    CachedContext(SSLContext context, long trustStoreModified, long keyStoreModified) {
+      this.context = context;
+      this.trustStoreModified = trustStoreModified;
+      this.keyStoreModified = keyStoreModified;
+    }
+  }
+
+  /**
+   * Accepts every server certificate, only used when validation is explicitly disabled
+   */
+  private static final class TrustAllManager implements X509TrustManager {
+    @Override public X509Certificate[] getAcceptedIssuers() {
+      return new X509Certificate[0];
+    }
+
+    @Override public void checkClientTrusted(X509Certificate[] certs, String authType) {
+    }
+
+    @Override public void checkServerTrusted(X509Certificate[] certs, String authType) {
+    }
+  }
+}
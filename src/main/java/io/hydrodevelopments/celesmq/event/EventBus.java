@@ -40,7 +40,7 @@ public class EventBus {
     String eventAction,
     boolean ignoreOwnEvents) {
     this.manager = manager;
-    this.logger = manager.getClient().getConnectionManager().getPlatform().getLogger();
+    this.logger = manager.getClient().getPlatform().getLogger();
     this.serverName = serverName;
     this.eventExchange = eventExchange;
     this.eventAction = eventAction;
@@ -0,0 +1,22 @@
+package io.hydrodevelopments.celesmq.listener;
+
+import io.hydrodevelopments.celesmq.message.MessageResponse;
+import io.hydrodevelopments.celesmq.platform.DispatchAffinity;
+
+/**
+ * Listener whose messages touch game state owned by one region or instance
+ * Main thread deliveries run on the thread owning the returned affinity (see
+ * {@link io.hydrodevelopments.celesmq.platform.Platform#runSync(DispatchAffinity, Runnable)}), so on Folia and Minestom
+ * messages for different regions are handled in parallel
+ */
+public interface AffinityListener extends ResponseListener {
+
+  /**
+   * Gets where a message has to be handled, called on the delivery thread before dispatching
+   *
+   * @param response the parsed message
+   *
+   * @return the affinity, or null for the main thread / global region
+   */
+  DispatchAffinity getAffinity(MessageResponse response);
+}
@@ -0,0 +1,19 @@
+package io.hydrodevelopments.celesmq.listener;
+
+import java.util.List;
+
+/**
+ * Functional interface for handling received messages in batches
+ */
+@FunctionalInterface public interface BatchMessageListener {
+
+  /**
+   * Called with a batch of received messages, in delivery order
+   * The whole batch is acknowledged when this returns, and rejected (or retried) together when it throws
+   *
+   * @param messages the received message contents
+   *
+   * @throws Exception to reject the batch
+   */
+  void onBatch(List<String> messages) throws Exception;
+}
@@ -0,0 +1,28 @@
+package io.hydrodevelopments.celesmq.listener;
+
+import io.hydrodevelopments.celesmq.message.MessageResponse;
+
+/**
+ * Listener that receives messages already parsed into a {@link MessageResponse}
+ * When several listeners share a subscription, the delivery is parsed once and the same response is handed to all of
+ * them
+ */
+@FunctionalInterface public interface ResponseListener extends MessageListener {
+
+  /**
+   * Called when a message is received and parsed
+   *
+   * @param response the parsed message
+   */
+  void onResponse(MessageResponse response);
+
+  /**
+   * Parses the raw message and passes it to {@link #onResponse(MessageResponse)}
+   * Also called with the raw message if parsing it for shared delivery failed
+   *
+   * @param message the received message content
+   */
+  @Override default void onMessageReceived(String message) {
+    onResponse(new MessageResponse(message));
+  }
+}
@@ -2,6 +2,7 @@ package io.hydrodevelopments.celesmq.message;
 
 import com.google.gson.JsonObject;
 import io.hydrodevelopments.celesmq.RabbitMQClient;
+import io.hydrodevelopments.celesmq.metrics.BlockingWatchdog;
 import io.hydrodevelopments.celesmq.util.JsonSerializer;
 
 import java.time.Instant;
@@ -72,6 +73,18 @@ public class MessageRequest {
     return this;
   }
 
+  /**
+   * Sets the timeout from measured broker latency instead of a fixed value
+   * The timeout becomes the processing budget plus a safety margin over the p99 round trip
+   *
+   * @param processingBudgetMs time the remote handler is expected to need
+   * @return this request builder
+   */
+  public MessageRequest adaptiveTimeout(long processingBudgetMs) {
+    this.timeout = client.getHealthMonitor().suggestTimeout(processingBudgetMs);
+    return this;
+  }
+
   /**
    * Sets a custom task ID
    */
@@ -331,7 +344,8 @@ public class MessageRequest {
    * Supports both direct queue and exchange-based routing
    */
   public CompletableFuture<MessageResponse> sendTo(String channel) {
-    CompletableFuture<MessageResponse> future = new CompletableFuture<>();
+    CompletableFuture<MessageResponse> future =
+        BlockingWatchdog.newFuture(client != null ? client.getWatchdog() : null);
 
     // Add taskID and replyTo
     data.addProperty("taskID", taskId);
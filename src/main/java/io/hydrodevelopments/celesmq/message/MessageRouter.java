@@ -1,8 +1,21 @@
 package io.hydrodevelopments.celesmq.message;
 
+import io.hydrodevelopments.celesmq.listener.AffinityListener;
+import io.hydrodevelopments.celesmq.listener.BatchMessageListener;
+import io.hydrodevelopments.celesmq.listener.ResponseListener;
+import io.hydrodevelopments.celesmq.platform.DispatchAffinity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -12,6 +25,9 @@ import java.util.logging.Logger;
 public class MessageRouter {
 
   private final Map<String, Consumer<MessageResponse>> handlers = new ConcurrentHashMap<>();
+  private final Map<String, Consumer<List<MessageResponse>>> batchHandlers = new ConcurrentHashMap<>();
+  private final Map<String, Function<MessageResponse, DispatchAffinity>> affinities = new ConcurrentHashMap<>();
+  private final List<RegistrationListener> registrationListeners = new CopyOnWriteArrayList<>();
   private final Logger logger;
   private Consumer<MessageResponse> defaultHandler;
   private Consumer<Exception> errorHandler;
@@ -24,7 +40,50 @@ public class MessageRouter {
    * Registers a handler for a specific action
    */
   public MessageRouter on(String action, Consumer<MessageResponse> handler) {
-    handlers.put(action.toLowerCase(), handler);
+    String key = action.toLowerCase();
+    affinities.remove(key);
+    if (handlers.put(key, handler) == null && !batchHandlers.containsKey(key)) {
+      registrationListeners.forEach(listener -> listener.onRegistered(key));
+    }
+    return this;
+  }
+
+  /**
+   * Registers a handler that runs on the thread owning what a message is about, e.g. the region of the player it
+   * names on Folia. Applies to subscriptions synced to the main thread, see {@link DispatchAffinity}
+   *
+   * @param affinity resolves a message's affinity, null means the main thread / global region
+   */
+  public MessageRouter on(String action, Function<MessageResponse, DispatchAffinity> affinity,
+    Consumer<MessageResponse> handler) {
+    on(action, handler);
+    affinities.put(action.toLowerCase(), affinity);
+    return this;
+  }
+
+  /**
+   * Gets where a message's handler has to run
+   *
+   * @return the affinity of the message's action, null if it has none
+   */
+  public DispatchAffinity getAffinity(MessageResponse response) {
+    if (!response.has("action")) {
+      return null;
+    }
+    Function<MessageResponse, DispatchAffinity> affinity = affinities.get(response.getString("action").toLowerCase());
+    return affinity != null ? affinity.apply(response) : null;
+  }
+
+  /**
+   * Registers a handler receiving an action's messages in batches, e.g. for bulk database writes
+   * Batches come from batch consumers (see {@link #asBatchListener()}), messages from other subscriptions arrive as
+   * single-element lists
+   */
+  public MessageRouter onBatch(String action, Consumer<List<MessageResponse>> handler) {
+    String key = action.toLowerCase();
+    if (batchHandlers.put(key, handler) == null && !handlers.containsKey(key)) {
+      registrationListeners.forEach(listener -> listener.onRegistered(key));
+    }
     return this;
   }
 
@@ -71,9 +130,12 @@ public class MessageRouter {
       if (response.has("action")) {
         String action = response.getString("action").toLowerCase();
         Consumer<MessageResponse> handler = handlers.get(action);
+        Consumer<List<MessageResponse>> batchHandler = batchHandlers.get(action);
 
         if (handler != null) {
           handler.accept(response);
+        } else if (batchHandler != null) {
+          batchHandler.accept(Collections.singletonList(response));
         } else if (defaultHandler != null) {
           defaultHandler.accept(response);
         } else {
@@ -90,6 +152,67 @@ public class MessageRouter {
     }
   }
 
+  /**
+   * Gets a listener that routes messages into this router
+   * Shared deliveries arrive pre-parsed, raw messages are parsed with the usual error handling
+   */
+  public ResponseListener asListener() {
+    return new AffinityListener() {
+      @Override public void onResponse(MessageResponse response) {
+        route(response);
+      }
+
+      @Override public DispatchAffinity getAffinity(MessageResponse response) {
+        return MessageRouter.this.getAffinity(response);
+      }
+
+      @Override public void onMessageReceived(String message) {
+        route(message);
+      }
+    };
+  }
+
+  /**
+   * Gets a batch listener that routes message batches into this router
+   * Messages of an action with a batch handler are handed over together, in delivery order. All other messages are
+   * routed one by one. Exceptions thrown by batch handlers propagate, so the consumer rejects or retries the batch.
+   */
+  public BatchMessageListener asBatchListener() {
+    return messages -> {
+      Map<String, List<MessageResponse>> batches = new LinkedHashMap<>();
+      for (String message : messages) {
+        MessageResponse response;
+        try {
+          response = new MessageResponse(message);
+        } catch (Exception e) {
+          handleError(e);
+          continue;
+        }
+
+        String action = response.has("action") ? response.getString("action").toLowerCase() : null;
+        if (action != null && batchHandlers.containsKey(action) && !handlers.containsKey(action)) {
+          // Replies to requests are still completed, as route() would
+          if (response.has("taskID")) {
+            MessageRequest.handleResponse(response.getInt("taskID"), response.getRawMessage());
+          }
+          batches.computeIfAbsent(action, key -> new ArrayList<>()).add(response);
+        } else {
+          route(response);
+        }
+      }
+
+      for (Map.Entry<String, List<MessageResponse>> batch : batches.entrySet()) {
+        Consumer<List<MessageResponse>> handler = batchHandlers.get(batch.getKey());
+        if (handler != null) {
+          handler.accept(batch.getValue());
+        } else {
+          // Removed meanwhile, fall back to single routing
+          batch.getValue().forEach(this::route);
+        }
+      }
+    };
+  }
+
   /**
    * Handles errors during message processing
    */
@@ -105,7 +228,13 @@ public class MessageRouter {
    * Unregisters a handler for a specific action
    */
   public MessageRouter remove(String action) {
-    handlers.remove(action.toLowerCase());
+    String key = action.toLowerCase();
+    affinities.remove(key);
+    boolean removed = handlers.remove(key) != null;
+    removed |= batchHandlers.remove(key) != null;
+    if (removed) {
+      registrationListeners.forEach(listener -> listener.onRemoved(key));
+    }
     return this;
   }
 
@@ -113,7 +242,9 @@ public class MessageRouter {
    * Clears all registered handlers
    */
   public MessageRouter clearAll() {
-    handlers.clear();
+    for (String action : getActions()) {
+      remove(action);
+    }
     defaultHandler = null;
     errorHandler = null;
     return this;
@@ -123,14 +254,33 @@ public class MessageRouter {
    * Gets the number of registered handlers
    */
   public int getHandlerCount() {
-    return handlers.size();
+    return getActions().size();
+  }
+
+  /**
+   * Gets the (lower-case) actions that have a handler
+   */
+  public Set<String> getActions() {
+    Set<String> actions = new HashSet<>(handlers.keySet());
+    actions.addAll(batchHandlers.keySet());
+    return actions;
+  }
+
+  /**
+   * Registers a listener notified whenever an action gains its first handler or loses it
+   * Used to bind only the routing keys of actions this server handles
+   */
+  public MessageRouter addRegistrationListener(RegistrationListener listener) {
+    registrationListeners.add(listener);
+    return this;
   }
 
   /**
    * Checks if a handler is registered for an action
    */
   public boolean hasHandler(String action) {
-    return handlers.containsKey(action.toLowerCase());
+    String key = action.toLowerCase();
+    return handlers.containsKey(key) || batchHandlers.containsKey(key);
   }
 
   /**
@@ -139,4 +289,23 @@ public class MessageRouter {
   public static MessageRouter create(Logger logger) {
     return new MessageRouter(logger);
   }
+
+  /**
+   * Notified when the set of handled actions changes
+   */
+  public interface RegistrationListener {
+    /**
+     * Called when an action gets a handler
+     *
+     * @param action lower-case action name
+     */
+    void onRegistered(String action);
+
+    /**
+     * Called when an action's handler is removed
+     *
+     * @param action lower-case action name
+     */
+    void onRemoved(String action);
+  }
 }
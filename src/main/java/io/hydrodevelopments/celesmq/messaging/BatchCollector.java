@@ -0,0 +1,127 @@
+package io.hydrodevelopments.celesmq.messaging;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Delivery;
+import io.hydrodevelopments.celesmq.connection.SharedExecutors;
+import io.hydrodevelopments.celesmq.listener.BatchMessageListener;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Collects the deliveries of one batch consumer until the batch is full or its oldest message has waited long enough
+ * <p>
+ * The batch is acknowledged with a single multiple-ack of its last delivery tag. That acks every earlier unacked
+ * delivery on the channel too, so a batch consumer always gets a channel of its own.
+ */
+class BatchCollector {
+
+  private final String queue;
+  private final BatchMessageListener listener;
+  private final int batchSize;
+  private final long maxWait;
+  private final Executor executor;
+  private final RetryPolicy retryPolicy;
+  private final Logger logger;
+
+  private final List<Delivery> pending = new ArrayList<>();
+  private Channel channel;
+  private ScheduledFuture<?> timer;
+
+  BatchCollector(String queue, BatchMessageListener listener, int batchSize, long maxWait, Executor executor,
+    RetryPolicy retryPolicy, Logger logger) {
+    this.queue = queue;
+    this.listener = listener;
+    this.batchSize = batchSize;
+    this.maxWait = maxWait;
+    this.executor = executor;
+    this.retryPolicy = retryPolicy;
+    this.logger = logger;
+  }
+
+  int getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+   * Adds a delivery, handing the batch to the listener once it is full
+   */
+  synchronized void add(Channel channel, Delivery delivery) {
+    if (this.channel != channel) {
+      // Deliveries of a previous channel cannot be acked anymore, the broker redelivers them
+      clear();
+      this.channel = channel;
+    }
+    pending.add(delivery);
+
+    if (pending.size() >= batchSize) {
+      flush();
+    } else if (timer == null) {
+      // The scheduler only hands off, the listener may block on I/O
+      timer = SharedExecutors.scheduler().schedule(() -> executor.execute(this::flush), maxWait,
+        TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Hands everything collected so far to the listener and acks or rejects it as one batch
+   */
+  synchronized void flush() {
+    if (timer != null) {
+      timer.cancel(false);
+      timer = null;
+    }
+    if (pending.isEmpty()) {
+      return;
+    }
+
+    List<Delivery> batch = new ArrayList<>(pending);
+    pending.clear();
+    List<String> messages = new ArrayList<>(batch.size());
+    for (Delivery delivery : batch) {
+      messages.add(new String(delivery.getBody(), StandardCharsets.UTF_8));
+    }
+    long lastTag = batch.get(batch.size() - 1).getEnvelope().getDeliveryTag();
+
+    try {
+      listener.onBatch(messages);
+      channel.basicAck(lastTag, true);
+    } catch (Exception e) {
+      logger.log(Level.SEVERE, "Error processing batch of " + batch.size() + " message(s) from " + queue, e);
+      reject(batch, lastTag);
+    }
+  }
+
+  private void reject(List<Delivery> batch, long lastTag) {
+    try {
+      if (retryPolicy.isEnabled()) {
+        for (Delivery delivery : batch) {
+          retryPolicy.handleFailure(channel, queue, delivery);
+        }
+      } else {
+        channel.basicNack(lastTag, true, true);
+      }
+    } catch (IOException e) {
+      logger.log(Level.SEVERE, "Failed to reject or retry batch from " + queue, e);
+    }
+  }
+
+  /**
+   * Drops collected deliveries without acking them, used when the consumer is restarted or cancelled
+   */
+  synchronized void clear() {
+    if (timer != null) {
+      timer.cancel(false);
+      timer = null;
+    }
+    pending.clear();
+    channel = null;
+  }
+}
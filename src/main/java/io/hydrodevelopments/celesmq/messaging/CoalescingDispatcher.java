@@ -0,0 +1,140 @@
+package io.hydrodevelopments.celesmq.messaging;
+
+import io.hydrodevelopments.celesmq.listener.MessageListener;
+import io.hydrodevelopments.celesmq.listener.ResponseListener;
+import io.hydrodevelopments.celesmq.message.MessageResponse;
+import io.hydrodevelopments.celesmq.metrics.RabbitMQMetrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Delivers only the latest message per key to a listener that cannot keep up
+ * <p>
+ * For state messages (server status, player location, queue size) an update is worthless once a newer one for the
+ * same key exists. Messages wait in a keyed buffer until the executor runs the next drain, and a newer message for a
+ * key replaces the pending one. While the listener is idle every message is delivered right away. While it is busy,
+ * or the main thread is behind on ticks, it catches up with current values instead of replaying stale ones.
+ */
+public class CoalescingDispatcher implements ResponseListener {
+
+  private final MessageListener delegate;
+  private final Function<MessageResponse, String> keyFunction;
+  private final Executor executor;
+  private final RabbitMQMetrics metrics;
+  private final Logger logger;
+
+  private final Map<Object, Pending> pending = new LinkedHashMap<>();
+  private boolean draining = false;
+
+  /**
+   * Creates a coalescing dispatcher
+   *
+   * @param delegate    listener receiving the latest message per key
+   * @param keyFunction extracts the key messages are coalesced by, null means never coalesce that message
+   * @param executor    runs the listener, e.g. the main thread
+   * @param metrics     metrics recording replaced messages
+   * @param logger      logger for listener errors
+   */
+  public CoalescingDispatcher(MessageListener delegate, Function<MessageResponse, String> keyFunction,
+    Executor executor, RabbitMQMetrics metrics, Logger logger) {
+    this.delegate = delegate;
+    this.keyFunction = keyFunction;
+    this.executor = executor;
+    this.metrics = metrics;
+    this.logger = logger;
+  }
+
+  @Override public void onResponse(MessageResponse response) {
+    String key = null;
+    try {
+      key = keyFunction.apply(response);
+    } catch (RuntimeException e) {
+      logger.log(Level.WARNING, "Coalescing key function failed, delivering message as is", e);
+    }
+    offer(key != null ? key : new Object(), new Pending(response.getRawMessage(), response));
+  }
+
+  @Override public void onMessageReceived(String message) {
+    MessageResponse response;
+    try {
+      response = new MessageResponse(message);
+    } catch (IllegalArgumentException e) {
+      // Not JSON, so there is no key, the listener reports the parse error itself
+      offer(new Object(), new Pending(message, null));
+      return;
+    }
+    onResponse(response);
+  }
+
+  private void offer(Object key, Pending message) {
+    boolean schedule;
+    synchronized (pending) {
+      if (pending.put(key, message) != null) {
+        metrics.recordCoalesced();
+      }
+      schedule = !draining;
+      draining = true;
+    }
+    if (schedule) {
+      executor.execute(this::drain);
+    }
+  }
+
+  /**
+   * Delivers everything pending, then reschedules itself if more arrived meanwhile
+   */
+  private void drain() {
+    List<Pending> batch;
+    synchronized (pending) {
+      batch = new ArrayList<>(pending.values());
+      pending.clear();
+    }
+
+    for (Pending message : batch) {
+      try {
+        if (message.response != null && delegate instanceof ResponseListener) {
+          ((ResponseListener) delegate).onResponse(message.response);
+        } else {
+          delegate.onMessageReceived(message.raw);
+        }
+      } catch (Exception e) {
+        logger.log(Level.SEVERE, "Error processing coalesced message", e);
+      }
+    }
+
+    synchronized (pending) {
+      if (pending.isEmpty()) {
+        draining = false;
+        return;
+      }
+    }
+    // Go back through the executor so a main thread drain yields to the rest of the tick
+    executor.execute(this::drain);
+  }
+
+  /**
+   * Gets the number of messages waiting for the next drain
+   */
+  public int getPendingCount() {
+    synchronized (pending) {
+      return pending.size();
+    }
+  }
+
+  private static final class Pending {
+    final String raw;
+    final MessageResponse response;
+
+    Pending(String raw, MessageResponse response) {
+      this.raw = raw;
+      this.response = response;
+    }
+  }
+}
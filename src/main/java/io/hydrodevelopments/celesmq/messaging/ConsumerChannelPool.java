@@ -0,0 +1,168 @@
+package io.hydrodevelopments.celesmq.messaging;
+
+import com.rabbitmq.client.Channel;
+import io.hydrodevelopments.celesmq.connection.RabbitMQConnectionManager;
+
+import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A fixed number of channels that all subscriptions of a consumer are spread over
+ * <p>
+ * Every channel is a process and some memory on the broker, so one channel per subscription does not scale. The client
+ * already routes deliveries to the right consumer by consumer tag, so many consumers can live on one channel. New
+ * subscriptions go to the channel with the fewest consumers. Declarations run on a short-lived channel per setup,
+ * because a failed declare closes its channel and would otherwise take every consumer on it down as well. A channel
+ * runs one RPC at a time, so a shared declare channel would also serialize subscriptions set up in parallel.
+ * <p>
+ * A channel error (e.g. an unknown delivery tag) closes a channel with every consumer on it, and automatic recovery
+ * only reopens channels lost with the connection. The owner is told about such channels so it can restart their
+ * consumers elsewhere.
+ */
+public class ConsumerChannelPool {
+
+  private final RabbitMQConnectionManager connectionManager;
+  private final Logger logger;
+  private final Channel[] channels;
+  private final int[] consumerCounts;
+  private final Consumer<Channel> channelLost;
+
+  /**
+   * Creates a channel pool
+   *
+   * @param connectionManager connection to open channels on
+   * @param size              number of channels
+   * @param logger            logger for close errors
+   * @param channelLost       called on the connection thread when the broker closes a channel with a channel error
+   */
+  public ConsumerChannelPool(RabbitMQConnectionManager connectionManager, int size, Logger logger,
+    Consumer<Channel> channelLost) {
+    this.connectionManager = connectionManager;
+    this.logger = logger;
+    this.channelLost = channelLost;
+    this.channels = new Channel[size];
+    this.consumerCounts = new int[size];
+  }
+
+  /**
+   * Gets the channel with the fewest consumers and counts one more consumer on it
+   * Closed channels are replaced, their consumers are gone with them
+   *
+   * @return channel to start a consumer on
+   *
+   * @throws IOException if a channel cannot be opened
+   */
+  public synchronized Channel acquire() throws IOException {
+    int best = -1;
+    for (int i = 0; i < channels.length; i++) {
+      if (channels[i] == null || !channels[i].isOpen()) {
+        channels[i] = null;
+        consumerCounts[i] = 0;
+      }
+      if (best < 0 || consumerCounts[i] < consumerCounts[best]) {
+        best = i;
+      }
+    }
+
+    if (channels[best] == null) {
+      channels[best] = openWatched();
+    }
+    consumerCounts[best]++;
+    return channels[best];
+  }
+
+  /**
+   * Counts one consumer less on a channel obtained from {@link #acquire()}
+   *
+   * @param channel the channel the consumer was on
+   */
+  public synchronized void release(Channel channel) {
+    for (int i = 0; i < channels.length; i++) {
+      if (channels[i] == channel && consumerCounts[i] > 0) {
+        consumerCounts[i]--;
+        return;
+      }
+    }
+  }
+
+  /**
+   * Opens a channel outside the pool for a consumer that needs one of its own, watched like pooled channels
+   *
+   * @return new channel, closed by the caller
+   *
+   * @throws IOException if the channel cannot be opened
+   */
+  public Channel openDedicated() throws IOException {
+    return openWatched();
+  }
+
+  private Channel openWatched() throws IOException {
+    Channel channel = connectionManager.createChannel();
+    channel.addShutdownListener(cause -> {
+      // Connection losses are handled by recovery, closes by this client are intended
+      if (!cause.isHardError() && !cause.isInitiatedByApplication()) {
+        logger.warning("Consumer channel closed by the broker: " + cause.getMessage());
+        channelLost.accept(channel);
+      }
+    });
+    return channel;
+  }
+
+  /**
+   * Opens a channel for the queue, exchange and binding declarations of one setup
+   * Server-named queues belong to the connection, so they outlive this channel
+   *
+   * @return new channel, to be closed with {@link #closeDeclareChannel(Channel)}
+   *
+   * @throws IOException if the channel cannot be opened
+   */
+  public Channel openDeclareChannel() throws IOException {
+    return connectionManager.createChannel();
+  }
+
+  /**
+   * Closes a channel obtained from {@link #openDeclareChannel()}, it may already be closed by a failed declare
+   *
+   * @param channel the declare channel
+   */
+  public void closeDeclareChannel(Channel channel) {
+    closeQuietly(channel);
+  }
+
+  /**
+   * Gets the number of channels currently open in the pool, not counting declare channels
+   */
+  public synchronized int getOpenChannelCount() {
+    int open = 0;
+    for (Channel channel : channels) {
+      if (channel != null && channel.isOpen()) {
+        open++;
+      }
+    }
+    return open;
+  }
+
+  /**
+   * Closes all channels, cancelling every consumer on them
+   */
+  public synchronized void close() {
+    for (int i = 0; i < channels.length; i++) {
+      closeQuietly(channels[i]);
+      channels[i] = null;
+      consumerCounts[i] = 0;
+    }
+  }
+
+  private void closeQuietly(Channel channel) {
+    try {
+      if (channel != null && channel.isOpen()) {
+        channel.close();
+      }
+    } catch (IOException | TimeoutException e) {
+      logger.log(Level.FINE, "Error closing consumer channel", e);
+    }
+  }
+}
@@ -0,0 +1,377 @@
+package io.hydrodevelopments.celesmq.messaging;
+
+import io.hydrodevelopments.celesmq.connection.SharedExecutors;
+import io.hydrodevelopments.celesmq.metrics.RabbitMQMetrics;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Weighted fair scheduling of publishes between tenants sharing one connection
+ * <p>
+ * Each tenant (usually one plugin's client) has its own queue. A single dispatch thread serves the queues with deficit
+ * round robin: every round a tenant earns {@value #QUANTUM_BYTES} bytes of credit per unit of weight and releases
+ * queued publishes while its credit covers them. A tenant flooding the connection therefore only delays its own queue,
+ * and latency-sensitive tenants get their share every round. Tenants can additionally be capped with a token bucket rate
+ * quota.
+ * <p>
+ * The dispatch thread only decides the order. Released publishes run on the tenant's executor, at most
+ * {@code concurrency} at a time per tenant, so publishes of different tenants still run in parallel.
+ */
+public class FairPublishScheduler {
+
+  /**
+   * Bytes of credit a tenant earns per round for each unit of weight
+   */
+  private static final int QUANTUM_BYTES = 4096;
+
+  private final RabbitMQMetrics metrics;
+  private final Logger logger;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition workAvailable = lock.newCondition();
+  private final List<Tenant> tenants = new ArrayList<>();
+
+  private Thread dispatchThread;
+  private boolean running = false;
+
+  public FairPublishScheduler(RabbitMQMetrics metrics, Logger logger) {
+    this.metrics = metrics;
+    this.logger = logger;
+  }
+
+  /**
+   * Registers a tenant
+   *
+   * @param name      tenant name used in metrics
+   * @param weight    share of the connection relative to other tenants
+   * @param rateLimit   maximum publishes per second, or 0 for no quota
+   * @param concurrency maximum publishes of this tenant running at once
+   * @param executor    runs the tenant's publishes
+   *
+   * @return tenant handle used to submit publishes
+   */
+  public Tenant register(String name, int weight, double rateLimit, int concurrency, Executor executor) {
+    Tenant tenant = new Tenant(name, weight, rateLimit, concurrency, executor, metrics.getTenantMetrics(name));
+    lock.lock();
+    try {
+      tenants.add(tenant);
+      if (!running) {
+        running = true;
+        dispatchThread = SharedExecutors.daemonThreadFactory("CelesMQ-Publish").newThread(this::dispatchLoop);
+        dispatchThread.start();
+      }
+    } finally {
+      lock.unlock();
+    }
+    return tenant;
+  }
+
+  /**
+   * Removes a tenant, dropping publishes it still has queued
+   * The dispatch thread stops once no tenants remain
+   *
+   * @param tenant tenant to remove
+   *
+   * @return publishes that were still queued, so the caller can fail them
+   */
+  public List<Runnable> unregister(Tenant tenant) {
+    lock.lock();
+    try {
+      tenants.remove(tenant);
+      List<Runnable> dropped = new ArrayList<>();
+      for (QueuedPublish publish : tenant.queue) {
+        dropped.add(publish.onDropped);
+      }
+      tenant.queue.clear();
+
+      if (tenants.isEmpty() && running) {
+        running = false;
+        workAvailable.signalAll();
+      }
+      return dropped;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Queues a publish for a tenant
+   *
+   * @param tenant    owning tenant
+   * @param bytes     message size, charged against the tenant's credit
+   * @param task      the publish itself, run on the tenant's executor
+   * @param onDropped run instead of the task if the tenant is unregistered first
+   */
+  public void submit(Tenant tenant, int bytes, Runnable task, Runnable onDropped) {
+    lock.lock();
+    try {
+      if (!tenants.contains(tenant)) {
+        onDropped.run();
+        return;
+      }
+      tenant.queue.add(new QueuedPublish(tenant, Math.max(bytes, 1), task, onDropped));
+      workAvailable.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void dispatchLoop() {
+    List<QueuedPublish> batch = new ArrayList<>();
+
+    while (true) {
+      lock.lock();
+      try {
+        long waitNanos;
+        while ((waitNanos = collectRound(batch)) != 0) {
+          // Stopped, or replaced by a newer thread after a stop and re-register
+          if (!running || dispatchThread != Thread.currentThread()) {
+            return;
+          }
+          if (waitNanos > 0) {
+            workAvailable.awaitNanos(waitNanos);
+          } else {
+            workAvailable.await();
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } finally {
+        lock.unlock();
+      }
+
+      // Hand off outside the lock so tenants can keep submitting meanwhile
+      for (QueuedPublish publish : batch) {
+        try {
+          publish.tenant.executor.execute(() -> run(publish));
+        } catch (RuntimeException e) {
+          logger.log(Level.SEVERE, "Failed to hand off scheduled publish", e);
+          finished(publish.tenant);
+          publish.onDropped.run();
+        }
+      }
+      batch.clear();
+    }
+  }
+
+  private void run(QueuedPublish publish) {
+    try {
+      publish.task.run();
+    } catch (Exception e) {
+      logger.log(Level.SEVERE, "Error in scheduled publish", e);
+    } finally {
+      finished(publish.tenant);
+    }
+  }
+
+  /**
+   * Frees one of the tenant's concurrency slots and wakes the dispatch thread if the tenant has more queued
+   */
+  private void finished(Tenant tenant) {
+    lock.lock();
+    try {
+      tenant.inFlight--;
+      if (!tenant.queue.isEmpty()) {
+        workAvailable.signal();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Runs one deficit round robin round, moving every publish that may be sent now into the batch
+   *
+   * @return 0 if work was collected, nanoseconds until a throttled tenant can send again, or -1 to wait for a submit or
+   * a finished publish
+   */
+  private long collectRound(List<QueuedPublish> batch) {
+    long now = System.nanoTime();
+    long nextRefill = Long.MAX_VALUE;
+    long roundsUntilCredit = Long.MAX_VALUE;
+    boolean pending = false;
+
+    for (Tenant tenant : tenants) {
+      // A tenant at its concurrency limit earns no credit until a publish finishes
+      if (tenant.queue.isEmpty() || tenant.inFlight >= tenant.concurrency) {
+        continue;
+      }
+      pending = true;
+
+      if (!tenant.refill(now)) {
+        if (!tenant.throttled) {
+          tenant.throttled = true;
+          tenant.stats.recordThrottled();
+        }
+        nextRefill = Math.min(nextRefill, tenant.nanosUntilToken());
+        continue;
+      }
+      tenant.throttled = false;
+
+      tenant.deficit += (long) QUANTUM_BYTES * tenant.weight;
+      while (!tenant.queue.isEmpty() && tenant.inFlight < tenant.concurrency
+        && tenant.queue.peek().bytes <= tenant.deficit && tenant.tryTakeToken()) {
+        QueuedPublish publish = tenant.queue.poll();
+        tenant.deficit -= publish.bytes;
+        tenant.inFlight++;
+        tenant.stats.recordPublished(TimeUnit.NANOSECONDS.toMillis(now - publish.queuedAt));
+        batch.add(publish);
+      }
+
+      // An idle tenant must not bank credit for a later burst
+      if (tenant.queue.isEmpty()) {
+        tenant.deficit = 0;
+      } else if (tenant.inFlight < tenant.concurrency && tenant.queue.peek().bytes > tenant.deficit) {
+        roundsUntilCredit = Math.min(roundsUntilCredit, tenant.roundsUntil(tenant.queue.peek().bytes));
+      }
+    }
+
+    if (!batch.isEmpty()) {
+      return 0;
+    }
+    if (!pending) {
+      return -1;
+    }
+    if (roundsUntilCredit != Long.MAX_VALUE) {
+      // Only messages larger than the credit are left, so skip the empty rounds instead of running them one by one
+      for (Tenant tenant : tenants) {
+        if (!tenant.queue.isEmpty() && !tenant.throttled && tenant.inFlight < tenant.concurrency) {
+          tenant.deficit += (roundsUntilCredit - 1) * QUANTUM_BYTES * tenant.weight;
+        }
+      }
+      return collectRound(batch);
+    }
+    // Only throttled tenants are left
+    return nextRefill == Long.MAX_VALUE ? -1 : Math.max(nextRefill, 1);
+  }
+
+  /**
+   * Gets the number of publishes waiting across all tenants
+   */
+  public int getQueuedCount() {
+    lock.lock();
+    try {
+      int total = 0;
+      for (Tenant tenant : tenants) {
+        total += tenant.queue.size();
+      }
+      return total;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * A publisher's share of the connection
+   */
+  public static final class Tenant {
+    private final String name;
+    private final int weight;
+    private final double rateLimit;
+    private final int concurrency;
+    private final Executor executor;
+    private final RabbitMQMetrics.TenantMetrics stats;
+    private final ArrayDeque<QueuedPublish> queue = new ArrayDeque<>();
+    private long deficit;
+    private boolean throttled;
+    private int inFlight;
+
+    // Token bucket, holds at most one second of quota
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+
+    private Tenant(String name, int weight, double rateLimit, int concurrency, Executor executor,
+      RabbitMQMetrics.TenantMetrics stats) {
+      this.name = name;
+      this.weight = weight;
+      this.rateLimit = rateLimit;
+      this.concurrency = concurrency;
+      this.executor = executor;
+      this.stats = stats;
+      this.tokens = Math.max(rateLimit, 1);
+    }
+
+    /**
+     * Adds tokens earned since the last refill
+     *
+     * @return true if at least one publish may be sent
+     */
+    private boolean refill(long now) {
+      if (rateLimit <= 0) {
+        return true;
+      }
+      tokens = Math.min(Math.max(rateLimit, 1), tokens + (now - lastRefill) / 1e9 * rateLimit);
+      lastRefill = now;
+      return tokens >= 1;
+    }
+
+    private boolean tryTakeToken() {
+      if (rateLimit <= 0) {
+        return true;
+      }
+      if (tokens < 1) {
+        return false;
+      }
+      tokens--;
+      return true;
+    }
+
+    /**
+     * Gets the number of rounds until the credit covers a message
+     */
+    private long roundsUntil(int bytes) {
+      long quantum = (long) QUANTUM_BYTES * weight;
+      return (bytes - deficit + quantum - 1) / quantum;
+    }
+
+    private long nanosUntilToken() {
+      return (long) Math.ceil((1 - tokens) / rateLimit * 1e9);
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public int getWeight() {
+      return weight;
+    }
+
+    public double getRateLimit() {
+      return rateLimit;
+    }
+
+    public int getConcurrency() {
+      return concurrency;
+    }
+
+    /**
+     * Gets the throughput and queueing delay metrics of this tenant
+     */
+    public RabbitMQMetrics.TenantMetrics getMetrics() {
+      return stats;
+    }
+  }
+
+  private static final class QueuedPublish {
+    final Tenant tenant;
+    final int bytes;
+    final Runnable task;
+    final Runnable onDropped;
+    final long queuedAt = System.nanoTime();
+
+    QueuedPublish(Tenant tenant, int bytes, Runnable task, Runnable onDropped) {
+      this.tenant = tenant;
+      this.bytes = bytes;
+      this.task = task;
+      this.onDropped = onDropped;
+    }
+  }
+}
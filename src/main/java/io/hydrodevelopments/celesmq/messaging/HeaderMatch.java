@@ -0,0 +1,28 @@
+package io.hydrodevelopments.celesmq.messaging;
+
+/**
+ * How a headers exchange binding compares message headers with its match arguments
+ */
+public enum HeaderMatch {
+  /**
+   * Every header in the match must be present with an equal value
+   */
+  ALL("all"),
+  /**
+   * At least one header in the match must be present with an equal value
+   */
+  ANY("any");
+
+  private final String value;
+
+  HeaderMatch(String value) {
+    this.value = value;
+  }
+
+  /**
+   * Gets the value of the x-match binding argument
+   */
+  public String getValue() {
+    return value;
+  }
+}
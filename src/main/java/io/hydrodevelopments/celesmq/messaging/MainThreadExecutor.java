@@ -0,0 +1,155 @@
+package io.hydrodevelopments.celesmq.messaging;
+
+import io.hydrodevelopments.celesmq.metrics.BlockingWatchdog;
+import io.hydrodevelopments.celesmq.metrics.RabbitMQMetrics;
+import io.hydrodevelopments.celesmq.platform.Platform;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.DoubleSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs main thread listeners within a time budget per tick
+ * <p>
+ * Tasks queue up and one drain per tick runs them until the budget is used, the rest waits for the next tick. A task
+ * cannot be interrupted, so one that takes longer than the whole budget is logged and counted as an overrun. At least
+ * one task runs per tick, so slow listeners still make progress. Under server load the budget shrinks to a quarter.
+ * Platforms without a main thread run tasks right away.
+ */
+public class MainThreadExecutor implements Executor {
+
+  /**
+   * Minimum time between two overrun warnings for the same source
+   */
+  private static final long WARNING_INTERVAL_MS = 10000;
+
+  private final Platform platform;
+  private final long budget;
+  private final DoubleSupplier throttle;
+  private final RabbitMQMetrics metrics;
+  private final BlockingWatchdog watchdog;
+  private final Logger logger;
+
+  private final Queue<Task> queue = new ConcurrentLinkedQueue<>();
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+  private final Map<String, Long> lastWarnings = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a main thread executor
+   *
+   * @param platform platform whose main thread runs the tasks
+   * @param budgetMs milliseconds per tick, 0 hands every task to the platform right away
+   * @param throttle current load throttle from 0 to 1, see {@link RabbitMQConsumer}
+   * @param metrics  metrics recording deferrals and overruns
+   * @param watchdog watchdog sampling slow tasks, or null
+   */
+  public MainThreadExecutor(Platform platform, long budgetMs, DoubleSupplier throttle, RabbitMQMetrics metrics,
+    BlockingWatchdog watchdog) {
+    this.platform = platform;
+    this.budget = TimeUnit.MILLISECONDS.toNanos(budgetMs);
+    this.throttle = throttle;
+    this.metrics = metrics;
+    this.watchdog = watchdog;
+    this.logger = platform.getLogger();
+  }
+
+  @Override public void execute(Runnable task) {
+    execute("main thread task", task);
+  }
+
+  /**
+   * Queues a task for the main thread
+   *
+   * @param source what the task handles, named in overrun warnings, e.g. the subscription key
+   * @param task   the task to run
+   */
+  public void execute(String source, Runnable task) {
+    if (watchdog != null) {
+      task = watchdog.watch(source, task);
+    }
+    if (budget <= 0 || !platform.hasMainThread()) {
+      platform.runSync(task);
+      return;
+    }
+    queue.add(new Task(source, task));
+    if (scheduled.compareAndSet(false, true)) {
+      platform.runNextTick(this::drain);
+    }
+  }
+
+  /**
+   * Runs queued tasks until this tick's budget is used, then defers the rest
+   */
+  private void drain() {
+    long budget = currentBudget();
+    long start = System.nanoTime();
+
+    Task task;
+    while ((task = queue.poll()) != null) {
+      long taskStart = System.nanoTime();
+      try {
+        task.runnable.run();
+      } catch (RuntimeException e) {
+        logger.log(Level.SEVERE, "Error in main thread task for " + task.source, e);
+      }
+
+      long elapsed = System.nanoTime() - taskStart;
+      if (elapsed > budget) {
+        overrun(task.source, TimeUnit.NANOSECONDS.toMillis(elapsed), budget);
+      }
+      if (System.nanoTime() - start >= budget) {
+        break;
+      }
+    }
+
+    scheduled.set(false);
+    if (!queue.isEmpty()) {
+      metrics.recordMainThreadDeferral();
+      if (scheduled.compareAndSet(false, true)) {
+        platform.runNextTick(this::drain);
+      }
+    }
+  }
+
+  /**
+   * Gets this tick's budget, shrinking to a quarter as the load throttle rises
+   */
+  private long currentBudget() {
+    return (long) (budget * (1 - throttle.getAsDouble() * 0.75));
+  }
+
+  private void overrun(String source, long elapsedMs, long budget) {
+    metrics.recordMainThreadOverrun(elapsedMs);
+    long now = System.currentTimeMillis();
+    Long last = lastWarnings.get(source);
+    if (last == null || now - last >= WARNING_INTERVAL_MS) {
+      lastWarnings.put(source, now);
+      logger.warning("Main thread listener for " + source + " took " + elapsedMs + "ms, over the "
+        + TimeUnit.NANOSECONDS.toMillis(budget) + "ms per tick budget");
+    }
+  }
+
+  /**
+   * Gets the number of tasks waiting for a tick
+   */
+  public int getPendingCount() {
+    return queue.size();
+  }
+
+  private static final class Task {
+    final String source;
+    final Runnable runnable;
+
+    Task(String source, Runnable runnable) {
+      this.source = source;
+      this.runnable = runnable;
+    }
+  }
+}
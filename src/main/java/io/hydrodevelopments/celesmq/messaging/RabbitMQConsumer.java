@@ -2,14 +2,35 @@ package io.hydrodevelopments.celesmq.messaging;
 
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.DeliverCallback;
+import io.hydrodevelopments.celesmq.config.RabbitMQConfig;
 import io.hydrodevelopments.celesmq.connection.RabbitMQConnectionManager;
+import io.hydrodevelopments.celesmq.connection.SharedExecutors;
+import io.hydrodevelopments.celesmq.listener.AffinityListener;
+import io.hydrodevelopments.celesmq.listener.BatchMessageListener;
 import io.hydrodevelopments.celesmq.listener.MessageListener;
+import io.hydrodevelopments.celesmq.listener.ResponseListener;
+import io.hydrodevelopments.celesmq.message.MessageResponse;
+import io.hydrodevelopments.celesmq.messaging.SubscriptionRegistry.Subscription;
+import io.hydrodevelopments.celesmq.metrics.BlockingWatchdog;
+import io.hydrodevelopments.celesmq.platform.DispatchAffinity;
 import io.hydrodevelopments.celesmq.platform.Platform;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -18,16 +39,80 @@ import java.util.logging.Logger;
  */
 public class RabbitMQConsumer {
 
+  /**
+   * Upper bound for threads used to re-create subscriptions after a recovery
+   */
+  private static final int MAX_RECOVERY_THREADS = 8;
+
+  /**
+   * Registry key prefixes, so a queue and an exchange of the same name never share a subscription
+   */
+  private static final String QUEUE_PREFIX = "queue:";
+  private static final String BROADCAST_PREFIX = "fanout:";
+  private static final String TOPIC_PREFIX = "topic:";
+  private static final String HEADERS_PREFIX = "headers:";
+
+  /**
+   * Registry key prefix of topic groups, followed by the exchange name
+   */
+  private static final String TOPIC_GROUP_PREFIX = "topics:";
+
   private final RabbitMQConnectionManager connectionManager;
   private final Platform platform;
+  private final RabbitMQConfig config;
   private final Logger logger;
-  private final Map<String, String> activeConsumers;
+  private final SubscriptionRegistry registry = new SubscriptionRegistry();
+  private final ConsumerChannelPool channelPool;
+  private final RetryPolicy retryPolicy;
+  private final Executor asyncExecutor;
+  private final MainThreadExecutor mainThreadExecutor;
+  private final BlockingWatchdog watchdog;
+  private final Object topicGroupLock = new Object();
+  private final List<Runnable> resubscribedCallbacks = new CopyOnWriteArrayList<>();
+  private final Runnable recoveryCallback;
 
   public RabbitMQConsumer(RabbitMQConnectionManager connectionManager) {
+    this(connectionManager, connectionManager.getPlatform(), connectionManager.getConfig());
+  }
+
+  /**
+   * Creates a consumer for a connection that may be shared with other clients
+   * @param connectionManager the connection to consume on
+   * @param platform the owning client's platform, used for main thread dispatch and logging
+   * @param config the owning client's configuration, used for declare arguments
+   */
+  public RabbitMQConsumer(RabbitMQConnectionManager connectionManager, Platform platform, RabbitMQConfig config) {
+    this(connectionManager, platform, config, null);
+  }
+
+  /**
+   * Creates a consumer whose main thread listeners are watched for blocking
+   * @param connectionManager the connection to consume on
+   * @param platform the owning client's platform, used for main thread dispatch and logging
+   * @param config the owning client's configuration, used for declare arguments
+   * @param watchdog the owning client's blocking watchdog, or null
+   */
+  public RabbitMQConsumer(RabbitMQConnectionManager connectionManager, Platform platform, RabbitMQConfig config,
+                          BlockingWatchdog watchdog) {
     this.connectionManager = connectionManager;
-    this.platform = connectionManager.getPlatform();
+    this.platform = platform;
+    this.config = config;
     this.logger = platform.getLogger();
-    this.activeConsumers = new HashMap<>();
+    this.asyncExecutor = SharedExecutors.asyncExecutor(config, platform);
+    this.channelPool = new ConsumerChannelPool(connectionManager, config.getConsumerChannelPoolSize(), logger,
+      this::restartSubscriptions);
+    this.retryPolicy = new RetryPolicy(config, connectionManager.getMetrics(), logger);
+    this.watchdog = watchdog;
+    this.mainThreadExecutor = new MainThreadExecutor(platform, config.getMainThreadBudget(), this::getThrottle,
+      connectionManager.getMetrics(), watchdog);
+
+    // With subscription recovery the client does not replay topology, the registry re-creates it instead
+    if (connectionManager.getConfig().isSubscriptionRecovery()) {
+      this.recoveryCallback = this::resubscribeAll;
+      connectionManager.onRecovery(recoveryCallback);
+    } else {
+      this.recoveryCallback = null;
+    }
   }
 
   /**
@@ -50,66 +135,41 @@ public class RabbitMQConsumer {
    * @return true if consumer started successfully, false otherwise
    */
   public boolean consume(String queueName, MessageListener listener, boolean autoAck, boolean syncToMainThread) {
-    try {
-      Channel channel = connectionManager.createChannel();
-
-      // Declare queue with configured parameters
-      boolean durable = connectionManager.getConfig().isQueueDurable();
-      boolean exclusive = connectionManager.getConfig().isQueueExclusive();
-      boolean autoDelete = connectionManager.getConfig().isQueueAutoDelete();
-      Map<String, Object> arguments = connectionManager.getConfig().getQueueArguments();
-
-      channel.queueDeclare(queueName, durable, exclusive, autoDelete, arguments);
-
-      // Set QoS prefetch count
-      channel.basicQos(1);
-
-      DeliverCallback deliverCallback = (consumerTag, delivery) -> {
-        String message = new String(delivery.getBody(), StandardCharsets.UTF_8);
-
-        Runnable task = () -> {
-          try {
-            listener.onMessageReceived(message);
-
-            // Manual acknowledgment if autoAck is false
-            if (!autoAck) {
-              channel.basicAck(delivery.getEnvelope().getDeliveryTag(), false);
-            }
-          } catch (Exception e) {
-            logger.log(Level.SEVERE, "Error processing message from queue: " + queueName, e);
-            if (!autoAck) {
-              try {
-                // Reject and requeue message on error
-                channel.basicNack(delivery.getEnvelope().getDeliveryTag(), false, true);
-              } catch (IOException ioException) {
-                logger.log(Level.SEVERE, "Failed to nack message", ioException);
-              }
-            }
-          }
-        };
-
-        // Execute on main thread if requested, otherwise run async
-        if (syncToMainThread) {
-          platform.runSync(task);
-        } else {
-          task.run();
-        }
-      };
-
-      // Start consuming
-      String consumerTag = channel.basicConsume(queueName, autoAck, deliverCallback, consumerTag1 -> {
-        logger.info("Consumer cancelled: " + consumerTag1);
-        activeConsumers.remove(queueName);
-      });
-
-      activeConsumers.put(queueName, consumerTag);
-      logger.info("Started consuming from queue: " + queueName + " (consumer tag: " + consumerTag + ")");
-      return true;
+    return subscribe(new Subscription(queueKey(queueName), SubscriptionRegistry.Kind.QUEUE, queueName, null, listener,
+      autoAck, syncToMainThread));
+  }
 
-    } catch (IOException e) {
-      logger.log(Level.SEVERE, "Failed to start consuming from queue: " + queueName, e);
-      return false;
+  /**
+   * Starts consuming messages from a queue in batches, e.g. for bulk database writes
+   * A batch is handed over once it has batchSize messages or its first message waited maxWaitMs, and is
+   * acknowledged as a whole. The consumer runs on a channel of its own with a prefetch of batchSize.
+   * @param queueName name of the queue to consume from
+   * @param listener callback for handling batches, run on a consumer thread
+   * @param batchSize maximum number of messages per batch
+   * @param maxWaitMs maximum time in milliseconds a message waits for its batch to fill
+   * @return true if consumer started successfully, false otherwise
+   */
+  public boolean consumeBatch(String queueName, BatchMessageListener listener, int batchSize, long maxWaitMs) {
+    if (batchSize <= 0 || batchSize > 65535 || maxWaitMs <= 0) {
+      throw new IllegalArgumentException("Batch size must be between 1 and 65535 and max wait positive");
     }
+    BatchCollector collector = new BatchCollector(queueName, listener, batchSize, maxWaitMs, asyncExecutor,
+      retryPolicy, logger);
+    return subscribe(new Subscription(queueKey(queueName), queueName, collector));
+  }
+
+  /**
+   * Wraps a listener so it only receives the latest message per key when it falls behind
+   * Subscribe the returned listener without main thread sync, the wrapper dispatches to the requested thread itself
+   * @param listener listener for state-style messages
+   * @param keyFunction extracts the coalescing key, e.g. action plus server name
+   * @param syncToMainThread whether to run the listener on the main thread
+   * @return coalescing listener to subscribe with
+   */
+  public CoalescingDispatcher coalescing(MessageListener listener, Function<MessageResponse, String> keyFunction,
+                                         boolean syncToMainThread) {
+    return new CoalescingDispatcher(listener, keyFunction,
+      syncToMainThread ? mainThreadExecutor : asyncExecutor, connectionManager.getMetrics(), logger);
   }
 
   /**
@@ -130,53 +190,8 @@ public class RabbitMQConsumer {
    * @return true if subscription successful, false otherwise
    */
   public boolean subscribeToBroadcast(String exchangeName, MessageListener listener, boolean syncToMainThread) {
-    try {
-      Channel channel = connectionManager.createChannel();
-
-      // Declare fanout exchange with configured parameters
-      boolean durable = connectionManager.getConfig().isExchangeDurable();
-      boolean autoDelete = connectionManager.getConfig().isExchangeAutoDelete();
-      Map<String, Object> arguments = connectionManager.getConfig().getExchangeArguments();
-
-      channel.exchangeDeclare(exchangeName, "fanout", durable, autoDelete, arguments);
-
-      // Create temporary exclusive queue
-      String queueName = channel.queueDeclare().getQueue();
-
-      // Bind queue to exchange
-      channel.queueBind(queueName, exchangeName, "");
-
-      DeliverCallback deliverCallback = (consumerTag, delivery) -> {
-        String message = new String(delivery.getBody(), StandardCharsets.UTF_8);
-
-        Runnable task = () -> {
-          try {
-            listener.onMessageReceived(message);
-          } catch (Exception e) {
-            logger.log(Level.SEVERE, "Error processing broadcast message", e);
-          }
-        };
-
-        if (syncToMainThread) {
-          platform.runSync(task);
-        } else {
-          task.run();
-        }
-      };
-
-      String consumerTag = channel.basicConsume(queueName, true, deliverCallback, tag -> {
-        logger.info("Broadcast consumer cancelled: " + tag);
-        activeConsumers.remove(exchangeName);
-      });
-
-      activeConsumers.put(exchangeName, consumerTag);
-      logger.info("Subscribed to broadcast exchange: " + exchangeName);
-      return true;
-
-    } catch (IOException e) {
-      logger.log(Level.SEVERE, "Failed to subscribe to broadcast exchange: " + exchangeName, e);
-      return false;
-    }
+    return subscribe(new Subscription(broadcastKey(exchangeName), SubscriptionRegistry.Kind.BROADCAST, exchangeName,
+      "", listener, true, syncToMainThread));
   }
 
   /**
@@ -200,60 +215,794 @@ public class RabbitMQConsumer {
    */
   public boolean subscribeToTopic(String exchangeName, String routingKeyPattern,
                                   MessageListener listener, boolean syncToMainThread) {
+    if (config.isCollapseTopicBindings()) {
+      return subscribeToGroup(exchangeName, "topic", routingKeyPattern, listener, syncToMainThread);
+    }
+    return subscribe(new Subscription(topicKey(exchangeName, routingKeyPattern), SubscriptionRegistry.Kind.TOPIC,
+      exchangeName, routingKeyPattern, listener, true, syncToMainThread));
+  }
+
+  /**
+   * Subscribes to a headers exchange, the broker only delivers messages whose headers match
+   * Filtering on the broker means unrelated messages are never transferred or parsed
+   * Cancel with the key "headers:exchange:x-match{header=value, ...}", e.g. "headers:events:all{region=eu}"
+   * @param exchangeName name of the headers exchange
+   * @param match headers and values to match, e.g. gamemode or region
+   * @param matchMode whether all or any of the headers must match
+   * @param listener callback for handling messages
+   * @param syncToMainThread whether to execute listener on main thread
+   * @return true if subscription successful, false otherwise
+   */
+  public boolean subscribeHeaders(String exchangeName, Map<String, Object> match, HeaderMatch matchMode,
+                                  MessageListener listener, boolean syncToMainThread) {
+    Map<String, Object> arguments = new LinkedHashMap<>(match);
+    arguments.put("x-match", matchMode.getValue());
+    return subscribe(new Subscription(headersKey(exchangeName, match, matchMode), SubscriptionRegistry.Kind.HEADERS,
+      exchangeName, "", arguments, listener, true, syncToMainThread));
+  }
+
+  /**
+   * Gets the subscription key of a headers subscription, equal filters share one queue
+   * @param exchangeName name of the headers exchange
+   * @param match headers and values to match
+   * @param matchMode whether all or any of the headers must match
+   * @return key accepted by {@link #unsubscribe(String)}
+   */
+  public static String headersKey(String exchangeName, Map<String, Object> match, HeaderMatch matchMode) {
+    return HEADERS_PREFIX + exchangeName + ":" + matchMode.getValue() + new TreeMap<>(match);
+  }
+
+  /**
+   * Gets the subscription key of a queue consumer
+   * @param queueName name of the queue
+   * @return key accepted by {@link #unsubscribe(String)}
+   */
+  public static String queueKey(String queueName) {
+    return QUEUE_PREFIX + queueName;
+  }
+
+  /**
+   * Gets the subscription key of a broadcast subscription
+   * @param exchangeName name of the fanout exchange
+   * @return key accepted by {@link #unsubscribe(String)}
+   */
+  public static String broadcastKey(String exchangeName) {
+    return BROADCAST_PREFIX + exchangeName;
+  }
+
+  /**
+   * Gets the subscription key of a topic subscription
+   * @param exchangeName name of the topic exchange
+   * @param routingKeyPattern routing key pattern
+   * @return key accepted by {@link #unsubscribe(String)}
+   */
+  public static String topicKey(String exchangeName, String routingKeyPattern) {
+    return TOPIC_PREFIX + exchangeName + ":" + routingKeyPattern;
+  }
+
+  /**
+   * Finds a subscription by its key, or by the unprefixed name keys had before they carried their kind
+   * Unprefixed names are tried as queue, broadcast exchange and "exchange:pattern" topic, in that order
+   */
+  private Subscription find(String key) {
+    for (String prefix : new String[]{"", QUEUE_PREFIX, BROADCAST_PREFIX, TOPIC_PREFIX}) {
+      Subscription subscription = registry.get(prefix + key);
+      if (subscription != null) {
+        return subscription;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Subscribes to one routing key of a direct exchange
+   * All keys of an exchange share one queue, so adding or removing a key only binds or unbinds it on that queue
+   * Cancel with {@link #unsubscribe(String, MessageListener)} using "exchange:routingKey"
+   * @param exchangeName name of the direct exchange
+   * @param routingKey exact routing key to receive
+   * @param listener callback for handling messages
+   * @param syncToMainThread whether to execute listener on main thread
+   * @return true if subscription successful, false otherwise
+   */
+  public boolean subscribeToRoutingKey(String exchangeName, String routingKey,
+                                       MessageListener listener, boolean syncToMainThread) {
+    return subscribeToGroup(exchangeName, "direct", routingKey, listener, syncToMainThread);
+  }
+
+  /**
+   * Adds a pattern to the exchange's group, creating the group's queue on first use
+   * Deliveries are matched against local patterns, so one queue and the minimal set of bindings serve all of them
+   */
+  private boolean subscribeToGroup(String exchangeName, String exchangeType, String pattern,
+                                   MessageListener listener, boolean syncToMainThread) {
+    synchronized (topicGroupLock) {
+      String key = TOPIC_GROUP_PREFIX + exchangeName;
+      Subscription group = registry.get(key);
+      SubscriptionRegistry.LocalListener local = new SubscriptionRegistry.LocalListener(listener, syncToMainThread);
+
+      try {
+        if (group == null) {
+          group = new Subscription(key, exchangeName, exchangeType);
+          group.trie.add(pattern, local);
+          start(group);
+          registry.register(group);
+        } else {
+          group.trie.add(pattern, local);
+          updateBindings(group);
+        }
+        logger.info("Group on " + exchangeType + " exchange " + exchangeName + ": " + group.getPatterns().size() + " pattern(s) over "
+          + group.getBindings().size() + " binding(s)");
+        return true;
+
+      } catch (IOException | RuntimeException e) {
+        // Closed channels throw AlreadyClosedException, a group that never started must not stay registered
+        logger.log(Level.SEVERE, "Failed to subscribe to " + exchangeType + " exchange: " + exchangeName
+          + " with key: " + pattern, e);
+        group.trie.remove(pattern, value -> value == local);
+        if (group.consumerTag == null) {
+          registry.remove(key, group);
+          if (group.channel != null) {
+            channelPool.release(group.channel);
+          }
+        }
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Gets the keys a group's queue must be bound with
+   * Direct exchanges compare keys literally, so only topic patterns can be collapsed
+   */
+  private Set<String> wantedBindings(Subscription group) {
+    Set<String> patterns = group.trie.getPatterns();
+    return "topic".equals(group.getExchangeType()) ? TopicTrie.minimalBindings(patterns) : patterns;
+  }
+
+  /**
+   * Binds and unbinds a group's queue so its bindings are the minimal set covering its local patterns
+   */
+  private void updateBindings(Subscription group) throws IOException {
+    Set<String> wanted = wantedBindings(group);
+    if (wanted.isEmpty()) {
+      unsubscribe(group.getKey());
+      return;
+    }
+
+    Channel declare = channelPool.openDeclareChannel();
     try {
-      Channel channel = connectionManager.createChannel();
+      for (String binding : wanted) {
+        if (!group.bindings.contains(binding)) {
+          declare.queueBind(group.queueName, group.getSource(), binding);
+        }
+      }
+      for (String binding : group.bindings) {
+        if (!wanted.contains(binding)) {
+          declare.queueUnbind(group.queueName, group.getSource(), binding);
+        }
+      }
+      group.bindings = wanted;
+    } finally {
+      channelPool.closeDeclareChannel(declare);
+    }
+  }
 
-      // Declare topic exchange with configured parameters
-      boolean durable = connectionManager.getConfig().isExchangeDurable();
-      boolean autoDelete = connectionManager.getConfig().isExchangeAutoDelete();
-      Map<String, Object> arguments = connectionManager.getConfig().getExchangeArguments();
+  /**
+   * Creates a subscription's topology and consumer and records it for recovery
+   */
+  private boolean subscribe(Subscription subscription) {
+    boolean shared = subscription.getKind() != SubscriptionRegistry.Kind.QUEUE;
+    if (shared) {
+      // A second binding to the same exchange would only deliver every message twice, share the existing queue
+      Subscription existing = registry.registerIfAbsent(subscription);
+      if (existing != null) {
+        SubscriptionRegistry.LocalListener added = subscription.getListeners().get(0);
+        existing.addListener(added.getListener(), added.isSyncToMainThread());
+        logger.info("Added listener to existing " + describe(existing) + " (" + existing.getListeners().size()
+          + " local listeners)");
+        return true;
+      }
+    }
 
-      channel.exchangeDeclare(exchangeName, "topic", durable, autoDelete, arguments);
+    try {
+      start(subscription);
+      if (!shared) {
+        registry.register(subscription);
+      }
+      return true;
 
-      // Create queue
-      String queueName = channel.queueDeclare().getQueue();
+    } catch (IOException | RuntimeException e) {
+      // Closed channels throw AlreadyClosedException, later listeners must not attach to a consumer-less subscription
+      logger.log(Level.SEVERE, "Failed to start " + describe(subscription), e);
+      if (shared) {
+        registry.remove(subscription.getKey(), subscription);
+      }
+      releaseChannel(subscription);
+      return false;
+    }
+  }
 
-      // Bind queue to exchange with routing pattern
-      channel.queueBind(queueName, exchangeName, routingKeyPattern);
+  /**
+   * Declares the queue, exchange and binding of a subscription and starts its consumer
+   * Used both for the first subscribe and for re-subscribing after recovery
+   */
+  private void start(Subscription subscription) throws IOException {
+    String queueName;
+    Channel declare = channelPool.openDeclareChannel();
+    try {
+      switch (subscription.getKind()) {
+        case QUEUE:
+          // Declare queue with configured parameters
+          queueName = subscription.getSource();
+          declare.queueDeclare(queueName, config.isQueueDurable(), config.isQueueExclusive(),
+            config.isQueueAutoDelete(), config.getQueueArguments());
+
+          // Only manually acknowledged messages can fail, auto-acked ones are gone once delivered
+          if (!subscription.isAutoAck() && retryPolicy.isEnabled()) {
+            retryPolicy.declare(declare, queueName);
+          }
+          break;
+
+        case BROADCAST:
+        case TOPIC:
+          // Declare exchange with configured parameters
+          String type = subscription.getKind() == SubscriptionRegistry.Kind.TOPIC ? "topic" : "fanout";
+          declare.exchangeDeclare(subscription.getSource(), type, config.isExchangeDurable(),
+            config.isExchangeAutoDelete(), config.getExchangeArguments());
+
+          // Create temporary exclusive queue and bind it, a new one is needed after every recovery
+          queueName = declare.queueDeclare().getQueue();
+          declare.queueBind(queueName, subscription.getSource(), subscription.getPattern());
+          break;
+
+        case HEADERS:
+          // Headers exchanges ignore the routing key, the binding arguments carry the filter
+          declare.exchangeDeclare(subscription.getSource(), "headers", config.isExchangeDurable(),
+            config.isExchangeAutoDelete(), config.getExchangeArguments());
+
+          queueName = declare.queueDeclare().getQueue();
+          declare.queueBind(queueName, subscription.getSource(), "", subscription.getBindArguments());
+          break;
+
+        case TOPIC_GROUP:
+        default:
+          declare.exchangeDeclare(subscription.getSource(), subscription.getExchangeType(), config.isExchangeDurable(),
+            config.isExchangeAutoDelete(), config.getExchangeArguments());
+
+          queueName = declare.queueDeclare().getQueue();
+          Set<String> bindings = wantedBindings(subscription);
+          for (String binding : bindings) {
+            declare.queueBind(queueName, subscription.getSource(), binding);
+          }
+          subscription.bindings = bindings;
+          break;
+      }
+    } finally {
+      channelPool.closeDeclareChannel(declare);
+    }
+    subscription.queueName = queueName;
+
+    // Recovered channels come back open and keep their place in the pool
+    Channel channel = subscription.channel;
+    if (channel == null || !channel.isOpen()) {
+      // Batch acks cover every earlier delivery on the channel, so batch consumers cannot share one
+      channel = subscription.isBatch() ? channelPool.openDedicated() : channelPool.acquire();
+      subscription.channel = channel;
+    }
 
-      DeliverCallback deliverCallback = (consumerTag, delivery) -> {
-        String message = new String(delivery.getBody(), StandardCharsets.UTF_8);
+    if (subscription.isBatch()) {
+      // A batch can only fill up if the broker may send that many unacked messages
+      subscription.batch.clear();
+      channel.basicQos(subscription.batch.getBatchSize());
+    } else if (subscription.getKind() == SubscriptionRegistry.Kind.QUEUE) {
+      // Set QoS prefetch count, applies per consumer to consumers started after it on this channel
+      channel.basicQos(1);
+    }
 
+    Channel consumerChannel = channel;
+    DeliverCallback deliverCallback = (consumerTag, delivery) -> {
+      if (subscription.isBatch()) {
+        subscription.batch.add(consumerChannel, delivery);
+        return;
+      }
+
+      double throttle = getThrottle();
+      if (subscription.bestEffort && throttle > 0) {
+        // Not worth a tick while the server is behind, the next update replaces it anyway
+        if (!subscription.isAutoAck()) {
+          consumerChannel.basicAck(delivery.getEnvelope().getDeliveryTag(), false);
+        }
+        connectionManager.getMetrics().recordShed();
+        return;
+      }
+
+      String message = new String(delivery.getBody(), StandardCharsets.UTF_8);
+      List<SubscriptionRegistry.LocalListener> listeners = subscription.trie != null
+        ? subscription.trie.match(delivery.getEnvelope().getRoutingKey())
+        : subscription.getListeners();
+      MessageResponse response = parseForListeners(message, listeners);
+
+      for (SubscriptionRegistry.LocalListener local : listeners) {
+        subscription.pending.incrementAndGet();
         Runnable task = () -> {
+          long started = System.currentTimeMillis();
           try {
-            listener.onMessageReceived(message);
+            if (response != null && local.getListener() instanceof ResponseListener) {
+              ((ResponseListener) local.getListener()).onResponse(response);
+            } else {
+              local.getListener().onMessageReceived(message);
+            }
+
+            // Manual acknowledgment if autoAck is false, only queue consumers have a single listener and ack
+            if (!subscription.isAutoAck()) {
+              consumerChannel.basicAck(delivery.getEnvelope().getDeliveryTag(), false);
+            }
           } catch (Exception e) {
-            logger.log(Level.SEVERE, "Error processing topic message", e);
+            logger.log(Level.SEVERE, "Error processing message from " + subscription.getKey(), e);
+            if (!subscription.isAutoAck()) {
+              try {
+                if (retryPolicy.isEnabled()) {
+                  // Retry after a delay, parking the message once its attempts are used up
+                  retryPolicy.handleFailure(consumerChannel, subscription.getSource(), delivery);
+                } else {
+                  // Reject and requeue message on error
+                  consumerChannel.basicNack(delivery.getEnvelope().getDeliveryTag(), false, true);
+                }
+              } catch (IOException | RuntimeException ioException) {
+                logger.log(Level.SEVERE, "Failed to reject or retry message", ioException);
+              }
+            }
+          } finally {
+            subscription.recordLatency(System.currentTimeMillis() - started);
+            if (subscription.pending.decrementAndGet() <= lowWatermark(getThrottle())
+              && subscription.paused.get()) {
+              resume(subscription);
+            }
           }
         };
 
-        if (syncToMainThread) {
-          platform.runSync(task);
+        // Execute on main thread if requested, otherwise run async, never on the channel's dispatch thread, which
+        // the pooled channel shares with unrelated subscriptions
+        if (local.isSyncToMainThread()) {
+          DispatchAffinity affinity = getAffinity(local.getListener(), response);
+          if (affinity != null) {
+            platform.runSync(affinity, watchdog != null ? watchdog.watch(subscription.getKey(), task) : task);
+          } else {
+            mainThreadExecutor.execute(subscription.getKey(), task);
+          }
         } else {
-          task.run();
+          asyncExecutor.execute(task);
         }
-      };
+      }
+
+      if (subscription.pending.get() >= highWatermark(throttle) && canPause(subscription)) {
+        pause(subscription);
+      }
+    };
+
+    // Start consuming
+    subscription.consumerTag = channel.basicConsume(queueName, subscription.isAutoAck(), deliverCallback, tag -> {
+      logger.info("Consumer cancelled by broker: " + tag + " (" + subscription.getKey() + ")");
+      if (registry.remove(subscription.getKey(), subscription)) {
+        releaseChannel(subscription);
+      }
+    });
+
+    logger.info("Started " + describe(subscription) + " (consumer tag: " + subscription.consumerTag + ")");
+  }
 
-      String consumerTag = channel.basicConsume(queueName, true, deliverCallback, tag -> {
-        logger.info("Topic consumer cancelled: " + tag);
-        activeConsumers.remove(exchangeName + ":" + routingKeyPattern);
-      });
+  /**
+   * Checks if a subscription's consumer may be cancelled for backpressure without losing its queue
+   */
+  private boolean canPause(Subscription subscription) {
+    return config.getConsumerHighWatermark() > 0 && subscription.getKind() == SubscriptionRegistry.Kind.QUEUE
+      && !subscription.isBatch() && !config.isQueueAutoDelete();
+  }
 
-      activeConsumers.put(exchangeName + ":" + routingKeyPattern, consumerTag);
-      logger.info("Subscribed to topic exchange: " + exchangeName + " with pattern: " + routingKeyPattern);
-      return true;
+  /**
+   * Gets how far the server load is past the throttle threshold
+   * @return 0 below the threshold, rising to 1 when ticks use their full 50ms budget
+   */
+  private double getThrottle() {
+    double threshold = config.getLoadThrottleThreshold();
+    if (threshold <= 0) {
+      return 0;
+    }
+    double throttle = (platform.getLoad() - threshold) / (1 - threshold);
+    return Math.max(0, Math.min(1, throttle));
+  }
+
+  /**
+   * Gets the pause watermark, lowered as the server load rises so fewer messages queue up behind a lagging tick
+   */
+  private int highWatermark(double throttle) {
+    return Math.max(1, (int) Math.round(config.getConsumerHighWatermark() * (1 - throttle)));
+  }
+
+  /**
+   * Gets the resume watermark, kept below the lowered pause watermark
+   */
+  private int lowWatermark(double throttle) {
+    return Math.min(config.getConsumerLowWatermark(), highWatermark(throttle) - 1);
+  }
+
+  /**
+   * Marks a subscription as best-effort, its messages are dropped (and acked) while the server load is above
+   * {@link RabbitMQConfig#getLoadThrottleThreshold()}, e.g. for cosmetic updates a later message replaces anyway
+   * @param key subscription key, see {@link #unsubscribe(String)}
+   * @param bestEffort whether messages may be dropped under load
+   * @return true if a subscription is registered under the key
+   */
+  public boolean setBestEffort(String key, boolean bestEffort) {
+    Subscription subscription = find(key);
+    if (subscription == null || subscription.isBatch()) {
+      return false;
+    }
+    subscription.bestEffort = bestEffort;
+    return true;
+  }
+
+  /**
+   * Cancels a consumer whose listeners fell behind, its messages wait in the broker until it resumes
+   */
+  private void pause(Subscription subscription) {
+    if (!subscription.paused.compareAndSet(false, true)) {
+      return;
+    }
+    // Cancelling is a broker round trip, keep it off the delivery and main threads
+    asyncExecutor.execute(() -> {
+      synchronized (subscription) {
+        String tag = subscription.consumerTag;
+        Channel channel = subscription.channel;
+        if (!subscription.paused.get() || tag == null || channel == null || !channel.isOpen()) {
+          return;
+        }
+        try {
+          channel.basicCancel(tag);
+          subscription.consumerTag = null;
+          connectionManager.getMetrics().recordConsumerPaused();
+          logger.warning("Paused " + describe(subscription) + ": " + subscription.getPendingCount()
+            + " message(s) waiting, average handling time " + Math.round(subscription.getAverageLatency()) + "ms");
+
+          // The listeners may have caught up before the cancel went through
+          if (subscription.pending.get() <= lowWatermark(getThrottle())) {
+            resume(subscription);
+          }
+        } catch (IOException e) {
+          subscription.paused.set(false);
+          logger.log(Level.WARNING, "Failed to pause " + describe(subscription), e);
+        }
+      }
+    });
+  }
+
+  /**
+   * Restarts a paused consumer once its listeners caught up
+   */
+  private void resume(Subscription subscription) {
+    if (!subscription.paused.compareAndSet(true, false)) {
+      return;
+    }
+    asyncExecutor.execute(() -> {
+      synchronized (subscription) {
+        // Paused again meanwhile, never actually cancelled, or unsubscribed
+        if (subscription.paused.get() || subscription.consumerTag != null
+          || registry.get(subscription.getKey()) != subscription) {
+          return;
+        }
+        try {
+          start(subscription);
+          logger.info("Resumed " + describe(subscription));
+        } catch (IOException e) {
+          logger.log(Level.SEVERE, "Failed to resume " + describe(subscription), e);
+        }
+      }
+    });
+  }
+
+  /**
+   * Restarts the subscriptions of a channel the broker closed with a channel error
+   * The registry still lists them, but nothing else would bring their consumers back
+   */
+  private void restartSubscriptions(Channel channel) {
+    // Called on the connection thread, which must not wait for broker replies
+    asyncExecutor.execute(() -> {
+      for (Subscription subscription : registry.getAll()) {
+        if (subscription.channel != channel) {
+          continue;
+        }
+        synchronized (subscription) {
+          if (subscription.channel != channel || registry.get(subscription.getKey()) != subscription) {
+            continue;
+          }
+          subscription.channel = null;
+          subscription.consumerTag = null;
+          if (subscription.paused.get()) {
+            // Resuming starts it on a new channel
+            continue;
+          }
+          try {
+            start(subscription);
+            logger.info("Restarted " + describe(subscription) + " after its channel was closed");
+          } catch (IOException | RuntimeException e) {
+            logger.log(Level.SEVERE, "Failed to restart " + describe(subscription), e);
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * Gets the region or instance a listener wants a message handled on
+   * @return the affinity, or null for the main thread
+   */
+  private DispatchAffinity getAffinity(MessageListener listener, MessageResponse response) {
+    if (!(listener instanceof AffinityListener) || response == null) {
+      return null;
+    }
+    try {
+      return ((AffinityListener) listener).getAffinity(response);
+    } catch (RuntimeException e) {
+      logger.log(Level.WARNING, "Failed to resolve dispatch affinity, handling message on the main thread", e);
+      return null;
+    }
+  }
+
+  /**
+   * Parses a delivery once for all listeners that take a parsed response
+   * @return the parsed message, or null if no listener needs it or it is not valid JSON
+   */
+  private MessageResponse parseForListeners(String message, List<SubscriptionRegistry.LocalListener> listeners) {
+    for (SubscriptionRegistry.LocalListener local : listeners) {
+      if (local.getListener() instanceof ResponseListener) {
+        try {
+          return new MessageResponse(message);
+        } catch (Exception e) {
+          // Each listener receives the raw message and reports the parse error itself
+          return null;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Re-creates every recorded subscription in parallel after the connection recovered
+   * Server-named queues died with the old connection, so each subscription gets a fresh queue and binding
+   */
+  private void resubscribeAll() {
+    List<Subscription> subscriptions = registry.getAll();
+    if (subscriptions.isEmpty()) {
+      runResubscribedCallbacks();
+      return;
+    }
+
+    long start = System.currentTimeMillis();
+    AtomicInteger failed = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(subscriptions.size(), MAX_RECOVERY_THREADS),
+      SharedExecutors.daemonThreadFactory("CelesMQ-Resubscribe"));
+
+    try {
+      CompletableFuture<?>[] futures = subscriptions.stream()
+        .map(subscription -> CompletableFuture.runAsync(() -> {
+          try {
+            start(subscription);
+          } catch (IOException | RuntimeException e) {
+            failed.incrementAndGet();
+            logger.log(Level.SEVERE, "Failed to re-subscribe " + subscription.getKey() + " after recovery", e);
+          }
+        }, executor))
+        .toArray(CompletableFuture[]::new);
+      CompletableFuture.allOf(futures).join();
+    } finally {
+      executor.shutdown();
+    }
+
+    long elapsed = System.currentTimeMillis() - start;
+    connectionManager.getMetrics().recordSubscriptionRecovery(elapsed, subscriptions.size() - failed.get());
+    logger.info("Re-subscribed " + (subscriptions.size() - failed.get()) + "/" + subscriptions.size()
+      + " subscription(s) in " + elapsed + "ms");
+
+    runResubscribedCallbacks();
+  }
+
+  private void runResubscribedCallbacks() {
+    for (Runnable callback : resubscribedCallbacks) {
+      try {
+        callback.run();
+      } catch (Exception e) {
+        logger.log(Level.WARNING, "Error in re-subscribe callback", e);
+      }
+    }
+  }
+
+  /**
+   * Registers a callback run after all subscriptions were re-created following a connection recovery
+   * Messages published while the connection was down were not received, use this to resync state
+   * @param callback the callback to run, on a background thread
+   */
+  public void onResubscribed(Runnable callback) {
+    resubscribedCallbacks.add(callback);
+  }
+
+  private String describe(Subscription subscription) {
+    switch (subscription.getKind()) {
+      case QUEUE:
+        return (subscription.isBatch() ? "batch consumer" : "consumer") + " on queue: " + subscription.getSource();
+      case BROADCAST:
+        return "subscription to broadcast exchange: " + subscription.getSource();
+      case HEADERS:
+        return "subscription to headers exchange: " + subscription.getSource() + " matching: "
+          + subscription.getBindArguments();
+      case TOPIC_GROUP:
+        return subscription.getExchangeType() + " group on exchange: " + subscription.getSource();
+      case TOPIC:
+      default:
+        return "subscription to topic exchange: " + subscription.getSource() + " with pattern: "
+          + subscription.getPattern();
+    }
+  }
+
+  /**
+   * Cancels a subscription by the key it was registered under
+   * See {@link #queueKey}, {@link #broadcastKey}, {@link #topicKey} and {@link #headersKey}, a bare queue name,
+   * exchange name or "exchange:pattern" still works while no other kind of subscription uses the same name
+   * @param key subscription key
+   * @return true if the subscription existed and was cancelled
+   */
+  public boolean unsubscribe(String key) {
+    Subscription subscription = find(key);
+    if (subscription == null) {
+      return removeFromTopicGroup(key, value -> true);
+    }
+    if (!registry.remove(subscription.getKey(), subscription)) {
+      return false;
+    }
 
+    Channel channel = subscription.channel;
+    if (subscription.isBatch()) {
+      // Hand over what was collected while the channel can still ack it
+      subscription.batch.flush();
+    }
+    try {
+      if (channel != null && channel.isOpen() && subscription.consumerTag != null) {
+        channel.basicCancel(subscription.consumerTag);
+      }
+      logger.info("Cancelled " + describe(subscription));
+      return true;
     } catch (IOException e) {
-      logger.log(Level.SEVERE, "Failed to subscribe to topic exchange", e);
+      logger.log(Level.WARNING, "Failed to cancel " + describe(subscription), e);
       return false;
+    } finally {
+      releaseChannel(subscription);
+    }
+  }
+
+  /**
+   * Gives a subscription's channel back to the pool, or closes it if the subscription had its own
+   */
+  private void releaseChannel(Subscription subscription) {
+    Channel channel = subscription.channel;
+    if (channel == null) {
+      return;
+    }
+    if (!subscription.isBatch()) {
+      channelPool.release(channel);
+      return;
+    }
+
+    subscription.batch.clear();
+    try {
+      if (channel.isOpen()) {
+        channel.close();
+      }
+    } catch (IOException | TimeoutException e) {
+      logger.log(Level.FINE, "Error closing batch consumer channel", e);
     }
   }
 
+  /**
+   * Detaches one listener from a subscription, cancelling the subscription when it was the last listener
+   * @param key subscription key
+   * @param listener the listener to detach
+   * @return true if the listener was attached
+   */
+  public boolean unsubscribe(String key, MessageListener listener) {
+    Subscription subscription = find(key);
+    if (subscription == null) {
+      return removeFromTopicGroup(key, value -> value.getListener() == listener);
+    }
+    if (!subscription.removeListener(listener)) {
+      return false;
+    }
+    if (subscription.getListeners().isEmpty()) {
+      unsubscribe(subscription.getKey());
+    }
+    return true;
+  }
+
+  /**
+   * Removes listeners of an "exchange:pattern" key, optionally with the topic prefix, from the exchange's topic group, narrowing its bindings
+   * @return true if the group had the pattern
+   */
+  private boolean removeFromTopicGroup(String key, Predicate<SubscriptionRegistry.LocalListener> filter) {
+    // Collapsed topic subscriptions are cancelled with their topicKey as well
+    if (key.startsWith(TOPIC_PREFIX) && removeFromTopicGroup(key.substring(TOPIC_PREFIX.length()), filter)) {
+      return true;
+    }
+    int separator = key.indexOf(':');
+    if (separator < 0) {
+      return false;
+    }
+    String pattern = key.substring(separator + 1);
+
+    synchronized (topicGroupLock) {
+      Subscription group = registry.get(TOPIC_GROUP_PREFIX + key.substring(0, separator));
+      if (group == null || !group.getPatterns().contains(pattern)) {
+        return false;
+      }
+      group.trie.remove(pattern, filter);
+      try {
+        updateBindings(group);
+      } catch (IOException e) {
+        logger.log(Level.WARNING, "Failed to update bindings of " + describe(group), e);
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Cancels a subscription by its consumer tag
+   * @param consumerTag consumer tag returned by the broker
+   * @return true if the subscription existed and was cancelled
+   */
+  public boolean cancelConsumer(String consumerTag) {
+    for (Subscription subscription : registry.getAll()) {
+      if (consumerTag.equals(subscription.consumerTag)) {
+        return unsubscribe(subscription.getKey());
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Closes every channel opened by this consumer, cancelling its subscriptions
+   * The connection itself stays open, it may be shared with other clients
+   */
+  public void close() {
+    if (recoveryCallback != null) {
+      connectionManager.removeRecoveryCallback(recoveryCallback);
+    }
+    for (Subscription subscription : registry.getAll()) {
+      if (subscription.isBatch()) {
+        releaseChannel(subscription);
+      }
+    }
+    channelPool.close();
+    registry.clear();
+  }
+
+  /**
+   * Gets the executor running main thread listeners within the per-tick budget
+   * @return MainThreadExecutor instance
+   */
+  public MainThreadExecutor getMainThreadExecutor() {
+    return mainThreadExecutor;
+  }
+
+  /**
+   * Gets the registry of recorded subscriptions
+   * @return SubscriptionRegistry instance
+   */
+  public SubscriptionRegistry getSubscriptions() {
+    return registry;
+  }
+
   /**
    * Gets the map of active consumers
-   * @return map of queue/exchange names to consumer tags
+   * @return map of subscription keys to consumer tags
    */
   public Map<String, String> getActiveConsumers() {
-    return new HashMap<>(activeConsumers);
+    return registry.getConsumerTags();
   }
-}
\ No newline at end of file
+}
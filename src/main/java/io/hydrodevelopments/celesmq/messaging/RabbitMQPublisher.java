@@ -3,13 +3,20 @@ package io.hydrodevelopments.celesmq.messaging;
 import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.MessageProperties;
+import io.hydrodevelopments.celesmq.config.RabbitMQConfig;
 import io.hydrodevelopments.celesmq.connection.RabbitMQConnectionManager;
+import io.hydrodevelopments.celesmq.connection.SharedExecutors;
+import io.hydrodevelopments.celesmq.metrics.BlockingWatchdog;
 import io.hydrodevelopments.celesmq.platform.Platform;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -20,12 +27,59 @@ public class RabbitMQPublisher {
 
   private final RabbitMQConnectionManager connectionManager;
   private final Platform platform;
+  private final RabbitMQConfig config;
   private final Logger logger;
+  private final Executor asyncExecutor;
+  private final BlockingWatchdog watchdog;
+  private final Runnable unblockedCallback;
+
+  // This client's share of a shared connection, null when the connection is not shared
+  private final FairPublishScheduler.Tenant tenant;
+
+  // Publishes held back while the broker blocks the connection (BUFFER policy)
+  private final ArrayDeque<PendingPublish> blockedBuffer = new ArrayDeque<>();
 
   public RabbitMQPublisher(RabbitMQConnectionManager connectionManager) {
+    this(connectionManager, connectionManager.getPlatform(), connectionManager.getConfig());
+  }
+
+  /**
+   * Creates a publisher for a connection that may be shared with other clients
+   * @param connectionManager the connection to publish on
+   * @param platform the owning client's platform, used for scheduling and logging
+   * @param config the owning client's configuration, used for declare arguments and publish policies
+   */
+  public RabbitMQPublisher(RabbitMQConnectionManager connectionManager, Platform platform, RabbitMQConfig config) {
+    this(connectionManager, platform, config, null);
+  }
+
+  /**
+   * Creates a publisher whose futures report blocking waits from the main thread
+   * @param connectionManager the connection to publish on
+   * @param platform the owning client's platform, used for scheduling and logging
+   * @param config the owning client's configuration, used for declare arguments and publish policies
+   * @param watchdog the owning client's blocking watchdog, or null
+   */
+  public RabbitMQPublisher(RabbitMQConnectionManager connectionManager, Platform platform, RabbitMQConfig config,
+                           BlockingWatchdog watchdog) {
     this.connectionManager = connectionManager;
-    this.platform = connectionManager.getPlatform();
+    this.platform = platform;
+    this.config = config;
     this.logger = platform.getLogger();
+    this.asyncExecutor = SharedExecutors.asyncExecutor(config, platform);
+    this.watchdog = watchdog;
+
+    // The callback runs on the connection I/O thread, so flush from an async task
+    this.unblockedCallback = () -> asyncExecutor.execute(this::flushBlockedBuffer);
+    connectionManager.onUnblocked(unblockedCallback);
+
+    if (config.isSharedConnection()) {
+      String name = config.getTenantName() != null ? config.getTenantName() : platform.getName() + "@" + hashCode();
+      this.tenant = connectionManager.getPublishScheduler().register(name, config.getPublishWeight(),
+        config.getPublishRateLimit(), config.getPublishConcurrency(), asyncExecutor);
+    } else {
+      this.tenant = null;
+    }
   }
 
   /**
@@ -46,36 +100,25 @@ public class RabbitMQPublisher {
    * @return CompletableFuture indicating success/failure
    */
   public CompletableFuture<Boolean> publishToQueue(String queueName, String message, boolean persistent) {
-    CompletableFuture<Boolean> future = new CompletableFuture<>();
-
-    platform.runAsync(() -> {
-      try {
-        Channel channel = connectionManager.getChannel();
-
-        // Declare queue with configured parameters, idempotent operation
-        boolean durable = connectionManager.getConfig().isQueueDurable();
-        boolean exclusive = connectionManager.getConfig().isQueueExclusive();
-        boolean autoDelete = connectionManager.getConfig().isQueueAutoDelete();
-        Map<String, Object> arguments = connectionManager.getConfig().getQueueArguments();
+    byte[] body = message.getBytes(StandardCharsets.UTF_8);
 
-        channel.queueDeclare(queueName, durable, exclusive, autoDelete, arguments);
+    return submit("queue: " + queueName, body.length, channel -> {
+      // Declare queue with configured parameters, idempotent operation
+      boolean durable = config.isQueueDurable();
+      boolean exclusive = config.isQueueExclusive();
+      boolean autoDelete = config.isQueueAutoDelete();
+      Map<String, Object> arguments = config.getQueueArguments();
 
-        // Prepare message properties
-        AMQP.BasicProperties props = persistent ?
-                MessageProperties.PERSISTENT_TEXT_PLAIN :
-                MessageProperties.TEXT_PLAIN;
+      channel.queueDeclare(queueName, durable, exclusive, autoDelete, arguments);
 
-        // Publish message to default exchange with queue name as routing key
-        channel.basicPublish("", queueName, props, message.getBytes(StandardCharsets.UTF_8));
-        future.complete(true);
+      // Prepare message properties
+      AMQP.BasicProperties props = persistent ?
+              MessageProperties.PERSISTENT_TEXT_PLAIN :
+              MessageProperties.TEXT_PLAIN;
 
-      } catch (IOException e) {
-        logger.log(Level.SEVERE, "Failed to publish message to queue: " + queueName, e);
-        future.complete(false);
-      }
+      // Publish message to default exchange with queue name as routing key
+      channel.basicPublish("", queueName, props, body);
     });
-
-    return future;
   }
 
   /**
@@ -100,35 +143,24 @@ public class RabbitMQPublisher {
    */
   public CompletableFuture<Boolean> publishToExchange(String exchangeName, String routingKey,
                                                       String message, String exchangeType, boolean persistent) {
-    CompletableFuture<Boolean> future = new CompletableFuture<>();
-
-    platform.runAsync(() -> {
-      try {
-        Channel channel = connectionManager.getChannel();
+    byte[] body = message.getBytes(StandardCharsets.UTF_8);
 
-        // Declare exchange with configured parameters, idempotent operation
-        boolean durable = connectionManager.getConfig().isExchangeDurable();
-        boolean autoDelete = connectionManager.getConfig().isExchangeAutoDelete();
-        Map<String, Object> arguments = connectionManager.getConfig().getExchangeArguments();
+    return submit("exchange: " + exchangeName, body.length, channel -> {
+      // Declare exchange with configured parameters, idempotent operation
+      boolean durable = config.isExchangeDurable();
+      boolean autoDelete = config.isExchangeAutoDelete();
+      Map<String, Object> arguments = config.getExchangeArguments();
 
-        channel.exchangeDeclare(exchangeName, exchangeType, durable, autoDelete, arguments);
+      channel.exchangeDeclare(exchangeName, exchangeType, durable, autoDelete, arguments);
 
-        // Prepare message properties
-        AMQP.BasicProperties props = persistent ?
-                MessageProperties.PERSISTENT_TEXT_PLAIN :
-                MessageProperties.TEXT_PLAIN;
+      // Prepare message properties
+      AMQP.BasicProperties props = persistent ?
+              MessageProperties.PERSISTENT_TEXT_PLAIN :
+              MessageProperties.TEXT_PLAIN;
 
-        // Publish message
-        channel.basicPublish(exchangeName, routingKey, props, message.getBytes(StandardCharsets.UTF_8));
-        future.complete(true);
-
-      } catch (IOException e) {
-        logger.log(Level.SEVERE, "Failed to publish message to exchange: " + exchangeName, e);
-        future.complete(false);
-      }
+      // Publish message
+      channel.basicPublish(exchangeName, routingKey, props, body);
     });
-
-    return future;
   }
 
   /**
@@ -141,39 +173,42 @@ public class RabbitMQPublisher {
    */
   public CompletableFuture<Boolean> publishWithHeaders(String exchangeName, String routingKey,
                                                        String message, Map<String, Object> headers) {
-    CompletableFuture<Boolean> future = new CompletableFuture<>();
-
-    platform.runAsync(() -> {
-      try {
-        Channel channel = connectionManager.getChannel();
+    return publishWithHeaders(exchangeName, routingKey, message, headers, "direct");
+  }
 
-        // Declare exchange with configured parameters
-        boolean durable = connectionManager.getConfig().isExchangeDurable();
-        boolean autoDelete = connectionManager.getConfig().isExchangeAutoDelete();
-        Map<String, Object> arguments = connectionManager.getConfig().getExchangeArguments();
+  /**
+   * Publishes a message with custom headers to an exchange of the given type
+   * Use "headers" to reach consumers subscribed with header matching
+   * @param exchangeName name of the exchange
+   * @param routingKey routing key, ignored by headers exchanges
+   * @param message message content
+   * @param headers custom headers
+   * @param exchangeType type of exchange (direct, fanout, topic, headers)
+   * @return CompletableFuture indicating success/failure
+   */
+  public CompletableFuture<Boolean> publishWithHeaders(String exchangeName, String routingKey, String message,
+                                                       Map<String, Object> headers, String exchangeType) {
+    byte[] body = message.getBytes(StandardCharsets.UTF_8);
 
-        channel.exchangeDeclare(exchangeName, "direct", durable, autoDelete, arguments);
+    return submit("exchange: " + exchangeName + " (with headers)", body.length, channel -> {
+      // Declare exchange with configured parameters
+      boolean durable = config.isExchangeDurable();
+      boolean autoDelete = config.isExchangeAutoDelete();
+      Map<String, Object> arguments = config.getExchangeArguments();
 
-        // Build properties with headers
-        AMQP.BasicProperties.Builder propsBuilder = new AMQP.BasicProperties.Builder();
-        propsBuilder.headers(headers);
-        propsBuilder.contentType("text/plain");
-        propsBuilder.deliveryMode(2);
+      channel.exchangeDeclare(exchangeName, exchangeType, durable, autoDelete, arguments);
 
-        // Publish message
-        channel.basicPublish(exchangeName, routingKey, propsBuilder.build(),
-                message.getBytes(StandardCharsets.UTF_8));
+      // Build properties with headers
+      AMQP.BasicProperties.Builder propsBuilder = new AMQP.BasicProperties.Builder();
+      propsBuilder.headers(headers);
+      propsBuilder.contentType("text/plain");
+      propsBuilder.deliveryMode(2);
 
-        logger.info("Message with headers published to exchange: " + exchangeName);
-        future.complete(true);
+      // Publish message
+      channel.basicPublish(exchangeName, routingKey, propsBuilder.build(), body);
 
-      } catch (IOException e) {
-        logger.log(Level.SEVERE, "Failed to publish message with headers", e);
-        future.complete(false);
-      }
+      logger.info("Message with headers published to exchange: " + exchangeName);
     });
-
-    return future;
   }
 
   /**
@@ -185,4 +220,151 @@ public class RabbitMQPublisher {
   public CompletableFuture<Boolean> broadcast(String exchangeName, String message) {
     return publishToExchange(exchangeName, "", message, "fanout", false);
   }
-}
\ No newline at end of file
+
+  /**
+   * Gets the number of publishes waiting for the broker to unblock the connection
+   * @return buffered publish count
+   */
+  public int getBlockedBufferSize() {
+    synchronized (blockedBuffer) {
+      return blockedBuffer.size();
+    }
+  }
+
+  /**
+   * Gets this publisher's share of a shared connection, including its throughput and queueing delay metrics
+   * @return tenant, or null if the connection is not shared
+   */
+  public FairPublishScheduler.Tenant getTenant() {
+    return tenant;
+  }
+
+  /**
+   * Detaches this publisher from its connection and fails publishes still waiting for an unblock
+   * Needed when the connection is shared and outlives this publisher
+   */
+  public void close() {
+    connectionManager.removeUnblockedCallback(unblockedCallback);
+    if (tenant != null) {
+      connectionManager.getPublishScheduler().unregister(tenant).forEach(Runnable::run);
+    }
+
+    List<PendingPublish> pending;
+    synchronized (blockedBuffer) {
+      pending = new ArrayList<>(blockedBuffer);
+      blockedBuffer.clear();
+    }
+    pending.forEach(publish -> publish.future.complete(false));
+  }
+
+  /**
+   * Schedules a publish operation on the async executor, or in this client's queue on a shared connection
+   */
+  private CompletableFuture<Boolean> submit(String target, int bytes, PublishOperation operation) {
+    CompletableFuture<Boolean> future = BlockingWatchdog.newFuture(watchdog);
+    PendingPublish publish = new PendingPublish(target, bytes, operation, future);
+    if (tenant != null) {
+      connectionManager.getPublishScheduler().submit(tenant, bytes, () -> execute(publish),
+        () -> future.complete(false));
+    } else {
+      asyncExecutor.execute(() -> execute(publish));
+    }
+    return future;
+  }
+
+  /**
+   * Writes a publish to the channel, unless the blocked-connection policy holds it back
+   */
+  private void execute(PendingPublish publish) {
+    if (connectionManager.isBlocked() && !admitWhileBlocked(publish)) {
+      return;
+    }
+
+    try {
+      Channel channel = connectionManager.getChannel();
+      publish.operation.publish(channel);
+      connectionManager.getMetrics().recordSent(publish.bytes);
+      publish.future.complete(true);
+
+    } catch (IOException | RuntimeException e) {
+      // A closed channel throws AlreadyClosedException, it is a failed publish like any other
+      logger.log(Level.SEVERE, "Failed to publish message to " + publish.target, e);
+      publish.future.complete(false);
+    }
+  }
+
+  /**
+   * Applies the configured blocked-connection policy
+   * @return true if the publish should still be written to the socket
+   */
+  private boolean admitWhileBlocked(PendingPublish publish) {
+    switch (config.getBlockedPublishPolicy()) {
+      case BLOCK:
+        return true;
+
+      case FAIL_FAST:
+        reject(publish);
+        return false;
+
+      case BUFFER:
+      default:
+        synchronized (blockedBuffer) {
+          // Re-check under the lock so a concurrent unblock flush cannot miss this publish
+          if (!connectionManager.isBlocked()) {
+            return true;
+          }
+          if (blockedBuffer.size() >= config.getBlockedPublishBufferSize()) {
+            reject(publish);
+          } else {
+            blockedBuffer.add(publish);
+          }
+        }
+        return false;
+    }
+  }
+
+  private void reject(PendingPublish publish) {
+    connectionManager.getMetrics().recordPublishRejected();
+    logger.warning("Broker connection is blocked (" + connectionManager.getBlockedReason()
+      + "), rejected publish to " + publish.target);
+    publish.future.complete(false);
+  }
+
+  /**
+   * Writes out every publish buffered while the connection was blocked
+   */
+  private void flushBlockedBuffer() {
+    List<PendingPublish> pending;
+    synchronized (blockedBuffer) {
+      if (blockedBuffer.isEmpty()) {
+        return;
+      }
+      pending = new ArrayList<>(blockedBuffer);
+      blockedBuffer.clear();
+    }
+
+    logger.info("Flushing " + pending.size() + " publish(es) buffered while the connection was blocked");
+    pending.forEach(this::execute);
+  }
+
+  /**
+   * Channel work performed by a single publish
+   */
+  @FunctionalInterface private interface PublishOperation {
+    void publish(Channel channel) throws IOException;
+  }
+
+  private static class PendingPublish {
+    final String target;
+    final int bytes;
+    final PublishOperation operation;
+    final CompletableFuture<Boolean> future;
+
+    PendingPublish(String target, int bytes, PublishOperation operation, CompletableFuture<Boolean> future) {
+      this.target = target;
+      this.bytes = bytes;
+      this.operation = operation;
+      this.future = future;
+    }
+  }
+}
@@ -0,0 +1,156 @@
+package io.hydrodevelopments.celesmq.messaging;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Delivery;
+import io.hydrodevelopments.celesmq.config.RabbitMQConfig;
+import io.hydrodevelopments.celesmq.metrics.RabbitMQMetrics;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Delayed retries for messages whose listener failed, instead of rejecting them straight back onto the queue
+ * <p>
+ * A requeued message is redelivered at once, so one that always fails loops on its queue forever and holds up every
+ * message behind it. Here each attempt has its own delay queue whose messages expire after that attempt's delay and are
+ * dead-lettered back to the original queue. The number of attempts so far is read from the broker's {@code x-death}
+ * header, and after the last one the message is moved to a parking queue for inspection.
+ * <p>
+ * Topology for a queue "orders" with 3 attempts: direct exchange "orders.retry", delay queues "orders.retry.1" to
+ * "orders.retry.3" bound with routing keys "1" to "3", and the parking queue "orders.parking".
+ */
+public class RetryPolicy {
+
+  private final int attempts;
+  private final long initialDelay;
+  private final double multiplier;
+  private final boolean durable;
+  private final RabbitMQMetrics metrics;
+  private final Logger logger;
+
+  public RetryPolicy(RabbitMQConfig config, RabbitMQMetrics metrics, Logger logger) {
+    this.attempts = config.getRetryAttempts();
+    this.initialDelay = config.getRetryInitialDelay();
+    this.multiplier = config.getRetryBackoffMultiplier();
+    this.durable = config.isQueueDurable();
+    this.metrics = metrics;
+    this.logger = logger;
+  }
+
+  /**
+   * Checks if failed messages are retried, otherwise they are rejected and requeued
+   */
+  public boolean isEnabled() {
+    return attempts > 0;
+  }
+
+  /**
+   * Gets the delay before an attempt in milliseconds
+   *
+   * @param attempt attempt number, starting at 1
+   */
+  public long getDelay(int attempt) {
+    return (long) Math.min(initialDelay * Math.pow(multiplier, attempt - 1), Integer.MAX_VALUE);
+  }
+
+  /**
+   * Declares the retry exchange, one delay queue per attempt and the parking queue of a queue
+   *
+   * @param channel channel to declare on
+   * @param queue   the queue whose failed messages are retried
+   *
+   * @throws IOException if a declaration fails
+   */
+  public void declare(Channel channel, String queue) throws IOException {
+    channel.exchangeDeclare(retryExchange(queue), "direct", durable, false, null);
+
+    for (int attempt = 1; attempt <= attempts; attempt++) {
+      // Expired messages go back to the original queue through the default exchange
+      Map<String, Object> arguments = new HashMap<>();
+      arguments.put("x-message-ttl", getDelay(attempt));
+      arguments.put("x-dead-letter-exchange", "");
+      arguments.put("x-dead-letter-routing-key", queue);
+
+      String delayQueue = retryExchange(queue) + "." + attempt;
+      channel.queueDeclare(delayQueue, durable, false, false, arguments);
+      channel.queueBind(delayQueue, retryExchange(queue), String.valueOf(attempt));
+    }
+
+    channel.queueDeclare(parkingQueue(queue), durable, false, false, null);
+  }
+
+  /**
+   * Sends a failed message to its next delay queue, or to the parking queue after the last attempt, and acks it
+   *
+   * @param channel  channel the message was delivered on
+   * @param queue    the queue it was consumed from
+   * @param delivery the failed delivery
+   *
+   * @throws IOException if the message could not be moved, it is then left unacknowledged
+   */
+  public void handleFailure(Channel channel, String queue, Delivery delivery) throws IOException {
+    int retries = getRetryCount(delivery.getProperties(), queue);
+
+    if (retries < attempts) {
+      // Republished with its headers, so x-death keeps counting the attempts made
+      channel.basicPublish(retryExchange(queue), String.valueOf(retries + 1), delivery.getProperties(),
+        delivery.getBody());
+      metrics.recordRetried();
+    } else {
+      channel.basicPublish("", parkingQueue(queue), delivery.getProperties(), delivery.getBody());
+      metrics.recordParked();
+      logger.warning("Moved message from " + queue + " to " + parkingQueue(queue) + " after " + retries
+        + " failed retries");
+    }
+
+    channel.basicAck(delivery.getEnvelope().getDeliveryTag(), false);
+  }
+
+  /**
+   * Gets how many retries a message went through, counted from the x-death entries of its queue's delay queues
+   *
+   * @param properties message properties
+   * @param queue      the queue it was consumed from
+   *
+   * @return number of earlier retries
+   */
+  public static int getRetryCount(AMQP.BasicProperties properties, String queue) {
+    Map<String, Object> headers = properties.getHeaders();
+    if (headers == null || !(headers.get("x-death") instanceof List)) {
+      return 0;
+    }
+
+    String prefix = retryExchange(queue) + ".";
+    int retries = 0;
+    for (Object entry : (List<?>) headers.get("x-death")) {
+      if (!(entry instanceof Map)) {
+        continue;
+      }
+      Map<?, ?> death = (Map<?, ?>) entry;
+      // Header values arrive as LongString, compare their text
+      Object deadQueue = death.get("queue");
+      if (deadQueue != null && deadQueue.toString().startsWith(prefix) && death.get("count") instanceof Number) {
+        retries += ((Number) death.get("count")).intValue();
+      }
+    }
+    return retries;
+  }
+
+  /**
+   * Gets the name of the exchange failed messages of a queue are retried through
+   */
+  public static String retryExchange(String queue) {
+    return queue + ".retry";
+  }
+
+  /**
+   * Gets the name of the queue messages of a queue are parked in after their last retry
+   */
+  public static String parkingQueue(String queue) {
+    return queue + ".parking";
+  }
+}
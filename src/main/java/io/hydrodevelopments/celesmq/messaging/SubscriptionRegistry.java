@@ -0,0 +1,383 @@
+package io.hydrodevelopments.celesmq.messaging;
+
+import com.rabbitmq.client.Channel;
+import io.hydrodevelopments.celesmq.listener.MessageListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records every subscription a consumer made, so it can be re-created after the connection recovers
+ * <p>
+ * A subscription is the full topology needed to receive messages: the queue (named or server-named), the exchange and
+ * binding, and the consumer on its channel. The amqp-client's own topology recovery replays these one declaration at a
+ * time; with the registry each subscription is re-created as one unit and all of them in parallel.
+ */
+public class SubscriptionRegistry {
+
+  private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+
+  /**
+   * Records a subscription, replacing any previous one with the same key
+   *
+   * @param subscription subscription to record
+   *
+   * @return the replaced subscription, or null
+   */
+  public Subscription register(Subscription subscription) {
+    return subscriptions.put(subscription.getKey(), subscription);
+  }
+
+  /**
+   * Records a subscription unless one with the same key exists
+   *
+   * @param subscription subscription to record
+   *
+   * @return the existing subscription, or null if this one was recorded
+   */
+  public Subscription registerIfAbsent(Subscription subscription) {
+    return subscriptions.putIfAbsent(subscription.getKey(), subscription);
+  }
+
+  /**
+   * Removes a subscription
+   *
+   * @param key subscription key
+   *
+   * @return the removed subscription, or null
+   */
+  public Subscription remove(String key) {
+    return subscriptions.remove(key);
+  }
+
+  /**
+   * Removes a subscription only if it is still the one registered under its key
+   *
+   * @param key          subscription key
+   * @param subscription expected subscription
+   *
+   * @return true if it was removed
+   */
+  public boolean remove(String key, Subscription subscription) {
+    return subscriptions.remove(key, subscription);
+  }
+
+  /**
+   * Gets a subscription by key
+   *
+   * @param key subscription key
+   *
+   * @return the subscription, or null
+   */
+  public Subscription get(String key) {
+    return subscriptions.get(key);
+  }
+
+  /**
+   * Gets a snapshot of all recorded subscriptions
+   */
+  public List<Subscription> getAll() {
+    return new ArrayList<>(subscriptions.values());
+  }
+
+  /**
+   * Gets the consumer tag of every active subscription
+   *
+   * @return map of subscription key to consumer tag
+   */
+  public Map<String, String> getConsumerTags() {
+    Map<String, String> tags = new LinkedHashMap<>();
+    for (Subscription subscription : subscriptions.values()) {
+      if (subscription.consumerTag != null) {
+        tags.put(subscription.getKey(), subscription.consumerTag);
+      }
+    }
+    return tags;
+  }
+
+  /**
+   * Gets the number of recorded subscriptions
+   */
+  public int size() {
+    return subscriptions.size();
+  }
+
+  /**
+   * Removes every subscription
+   */
+  public void clear() {
+    subscriptions.clear();
+  }
+
+  /**
+   * Kind of topology a subscription consumes from
+   */
+  public enum Kind {
+    /**
+     * A named queue
+     */
+    QUEUE,
+    /**
+     * A server-named queue bound to a fanout exchange
+     */
+    BROADCAST,
+    /**
+     * A server-named queue bound to a topic exchange with a pattern
+     */
+    TOPIC,
+    /**
+     * A server-named queue bound to a headers exchange with header match arguments
+     */
+    HEADERS,
+    /**
+     * One server-named queue per topic or direct exchange, bound with the minimal set of keys covering every local
+     * listener
+     */
+    TOPIC_GROUP
+  }
+
+  /**
+   * Recorded topology and consumer state of one subscription
+   */
+  public static class Subscription {
+    private final String key;
+    private final Kind kind;
+    private final String source;
+    private final String pattern;
+    private final List<LocalListener> listeners = new CopyOnWriteArrayList<>();
+    private final boolean autoAck;
+    private final String exchangeType;
+    private final Map<String, Object> bindArguments;
+
+    // Local pattern matching and current broker bindings, TOPIC_GROUP only
+    final TopicTrie<LocalListener> trie;
+    volatile Set<String> bindings = Collections.emptySet();
+
+    // Collected deliveries of batch consumers, which run on a channel of their own
+    final BatchCollector batch;
+
+    // Local backpressure: work handed to listeners but not finished, and whether the consumer is paused for it
+    final AtomicInteger pending = new AtomicInteger();
+    final AtomicBoolean paused = new AtomicBoolean();
+    private volatile double averageLatency;
+
+    // Dropped instead of handled while the server is overloaded
+    volatile boolean bestEffort;
+
+    // Current broker-side state, replaced on every (re)subscribe
+    volatile Channel channel;
+    volatile String queueName;
+    volatile String consumerTag;
+
+    Subscription(String key, Kind kind, String source, String pattern, MessageListener listener, boolean autoAck,
+      boolean syncToMainThread) {
+      this(key, kind, source, pattern, null, listener, autoAck, syncToMainThread);
+    }
+
+    Subscription(String key, Kind kind, String source, String pattern, Map<String, Object> bindArguments,
+      MessageListener listener, boolean autoAck, boolean syncToMainThread) {
+      this.key = key;
+      this.kind = kind;
+      this.source = source;
+      this.pattern = pattern;
+      this.autoAck = autoAck;
+      this.listeners.add(new LocalListener(listener, syncToMainThread));
+      this.bindArguments = bindArguments;
+      this.exchangeType = null;
+      this.trie = null;
+      this.batch = null;
+    }
+
+    /**
+     * Creates a batch consumer on a queue, deliveries go to the collector instead of local listeners
+     */
+    Subscription(String key, String queue, BatchCollector batch) {
+      this.key = key;
+      this.kind = Kind.QUEUE;
+      this.source = queue;
+      this.pattern = null;
+      this.autoAck = false;
+      this.exchangeType = null;
+      this.bindArguments = null;
+      this.trie = null;
+      this.batch = batch;
+    }
+
+    /**
+     * Creates an empty group for a topic or direct exchange, listeners are added through its trie
+     */
+    Subscription(String key, String exchange, String exchangeType) {
+      this.key = key;
+      this.kind = Kind.TOPIC_GROUP;
+      this.source = exchange;
+      this.pattern = null;
+      this.autoAck = true;
+      this.exchangeType = exchangeType;
+      this.bindArguments = null;
+      this.trie = new TopicTrie<>();
+      this.batch = null;
+    }
+
+    /**
+     * Adds another local listener that receives every delivery of this subscription
+     *
+     * @param listener         the listener
+     * @param syncToMainThread whether to run it on the main thread
+     */
+    public void addListener(MessageListener listener, boolean syncToMainThread) {
+      listeners.add(new LocalListener(listener, syncToMainThread));
+    }
+
+    public String getKey() {
+      return key;
+    }
+
+    public Kind getKind() {
+      return kind;
+    }
+
+    /**
+     * Gets the queue name for QUEUE subscriptions, or the exchange name otherwise
+     */
+    public String getSource() {
+      return source;
+    }
+
+    /**
+     * Gets the binding pattern for TOPIC subscriptions
+     */
+    public String getPattern() {
+      return pattern;
+    }
+
+    /**
+     * Gets the arguments the queue is bound with, including x-match, HEADERS only
+     */
+    public Map<String, Object> getBindArguments() {
+      return bindArguments;
+    }
+
+    /**
+     * Gets the type of the exchange a TOPIC_GROUP consumes from, "topic" or "direct"
+     */
+    public String getExchangeType() {
+      return exchangeType;
+    }
+
+    /**
+     * Removes a local listener
+     *
+     * @param listener the listener to remove
+     *
+     * @return true if it was attached
+     */
+    public boolean removeListener(MessageListener listener) {
+      return listeners.removeIf(local -> local.getListener() == listener);
+    }
+
+    /**
+     * Gets every local listener sharing this subscription's queue
+     */
+    public List<LocalListener> getListeners() {
+      return listeners;
+    }
+
+    /**
+     * Checks if deliveries are handed over in batches
+     */
+    public boolean isBatch() {
+      return batch != null;
+    }
+
+    public boolean isAutoAck() {
+      return autoAck;
+    }
+
+    /**
+     * Gets the queue currently consumed from, server-named queues change on every recovery
+     */
+    public String getQueueName() {
+      return queueName;
+    }
+
+    public String getConsumerTag() {
+      return consumerTag;
+    }
+
+    /**
+     * Gets the number of received messages waiting for or running in their listeners
+     */
+    public int getPendingCount() {
+      return pending.get();
+    }
+
+    /**
+     * Checks if the consumer is paused because its listeners fell behind
+     */
+    public boolean isPaused() {
+      return paused.get();
+    }
+
+    /**
+     * Gets the moving average of listener run time in milliseconds
+     */
+    public double getAverageLatency() {
+      return averageLatency;
+    }
+
+    /**
+     * Checks if messages are dropped while the server is overloaded, see {@link RabbitMQConsumer#setBestEffort}
+     */
+    public boolean isBestEffort() {
+      return bestEffort;
+    }
+
+    void recordLatency(long latencyMs) {
+      // Exponentially weighted, recent deliveries count most
+      averageLatency = averageLatency * 0.9 + latencyMs * 0.1;
+    }
+
+    /**
+     * Gets the patterns bound on the broker, TOPIC_GROUP only
+     */
+    public Set<String> getBindings() {
+      return bindings;
+    }
+
+    /**
+     * Gets the patterns local listeners asked for, TOPIC_GROUP only
+     */
+    public Set<String> getPatterns() {
+      return trie != null ? trie.getPatterns() : Collections.emptySet();
+    }
+  }
+
+  /**
+   * A listener attached to a subscription, with the thread it wants deliveries on
+   */
+  public static class LocalListener {
+    private final MessageListener listener;
+    private final boolean syncToMainThread;
+
+    public LocalListener(MessageListener listener, boolean syncToMainThread) {
+      this.listener = listener;
+      this.syncToMainThread = syncToMainThread;
+    }
+
+    public MessageListener getListener() {
+      return listener;
+    }
+
+    public boolean isSyncToMainThread() {
+      return syncToMainThread;
+    }
+  }
+}
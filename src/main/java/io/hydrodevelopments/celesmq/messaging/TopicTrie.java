@@ -0,0 +1,200 @@
+package io.hydrodevelopments.celesmq.messaging;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Local matcher for AMQP topic routing key patterns
+ * <p>
+ * Patterns are dot-separated words where {@code *} matches exactly one word and {@code #} matches zero or more words,
+ * the same rules a topic exchange applies. Patterns are stored word by word in a trie, so matching a routing key visits
+ * only the branches that can still match instead of testing every pattern. Also provides the subsumption test used to
+ * collapse overlapping patterns into a minimal set of broker bindings.
+ *
+ * @param <T> type of the values registered under patterns
+ */
+public class TopicTrie<T> {
+
+  private final Node<T> root = new Node<>();
+
+  /**
+   * Registers a value under a pattern
+   *
+   * @param pattern routing key pattern
+   * @param value   value to return for matching keys
+   */
+  public synchronized void add(String pattern, T value) {
+    Node<T> node = root;
+    for (String word : split(pattern)) {
+      node = node.children.computeIfAbsent(word, w -> new Node<>());
+    }
+    node.values.add(value);
+  }
+
+  /**
+   * Removes values registered under a pattern
+   *
+   * @param pattern routing key pattern
+   * @param filter  selects the values to remove
+   *
+   * @return true if the pattern has no values left
+   */
+  public synchronized boolean remove(String pattern, Predicate<T> filter) {
+    return remove(root, split(pattern), 0, filter);
+  }
+
+  private boolean remove(Node<T> node, String[] words, int index, Predicate<T> filter) {
+    if (index == words.length) {
+      node.values.removeIf(filter);
+      return node.values.isEmpty();
+    }
+    Node<T> child = node.children.get(words[index]);
+    if (child == null) {
+      return true;
+    }
+    boolean empty = remove(child, words, index + 1, filter);
+    // Prune branches that no longer lead to any value
+    if (child.values.isEmpty() && child.children.isEmpty()) {
+      node.children.remove(words[index]);
+    }
+    return empty;
+  }
+
+  /**
+   * Gets every value whose pattern matches a routing key, each value once
+   *
+   * @param routingKey routing key of a delivery
+   *
+   * @return matching values
+   */
+  public synchronized List<T> match(String routingKey) {
+    Set<T> result = Collections.newSetFromMap(new IdentityHashMap<>());
+    match(root, split(routingKey), 0, result);
+    return new ArrayList<>(result);
+  }
+
+  private void match(Node<T> node, String[] words, int index, Set<T> result) {
+    Node<T> hash = node.children.get("#");
+
+    if (index == words.length) {
+      result.addAll(node.values);
+      if (hash != null) {
+        match(hash, words, index, result);
+      }
+      return;
+    }
+
+    Node<T> literal = node.children.get(words[index]);
+    if (literal != null) {
+      match(literal, words, index + 1, result);
+    }
+    Node<T> star = node.children.get("*");
+    if (star != null) {
+      match(star, words, index + 1, result);
+    }
+    if (hash != null) {
+      // # consumes any number of words, including none
+      for (int next = index; next <= words.length; next++) {
+        match(hash, words, next, result);
+      }
+    }
+  }
+
+  /**
+   * Gets every pattern that currently has values
+   */
+  public synchronized Set<String> getPatterns() {
+    Set<String> patterns = new LinkedHashSet<>();
+    collect(root, new ArrayList<>(), patterns);
+    return patterns;
+  }
+
+  private void collect(Node<T> node, List<String> path, Set<String> patterns) {
+    if (!node.values.isEmpty()) {
+      patterns.add(String.join(".", path));
+    }
+    for (Map.Entry<String, Node<T>> entry : node.children.entrySet()) {
+      path.add(entry.getKey());
+      collect(entry.getValue(), path, patterns);
+      path.remove(path.size() - 1);
+    }
+  }
+
+  /**
+   * Checks if every routing key matched by one pattern is also matched by another
+   *
+   * @param general  the broader pattern, e.g. "server.#"
+   * @param specific the narrower pattern, e.g. "server.*.events"
+   *
+   * @return true if binding general alone receives everything specific would
+   */
+  public static boolean subsumes(String general, String specific) {
+    return subsumes(split(general), 0, split(specific), 0);
+  }
+
+  private static boolean subsumes(String[] general, int g, String[] specific, int s) {
+    if (g == general.length) {
+      return s == specific.length;
+    }
+    if (general[g].equals("#")) {
+      // Either # matches nothing here, or it absorbs the next word (or wildcard) of the specific pattern
+      return subsumes(general, g + 1, specific, s)
+        || (s < specific.length && subsumes(general, g, specific, s + 1));
+    }
+    if (s == specific.length) {
+      return false;
+    }
+    if (specific[s].equals("#")) {
+      // Only # can cover a # in the narrower pattern
+      return false;
+    }
+    if (general[g].equals("*") || general[g].equals(specific[s])) {
+      return subsumes(general, g + 1, specific, s + 1);
+    }
+    return false;
+  }
+
+  /**
+   * Reduces patterns to the smallest set whose bindings receive every key any of them matches
+   *
+   * @param patterns patterns requested by local listeners
+   *
+   * @return patterns that must be bound on the broker
+   */
+  public static Set<String> minimalBindings(Set<String> patterns) {
+    Set<String> bindings = new LinkedHashSet<>();
+    for (String pattern : patterns) {
+      boolean covered = false;
+      for (String other : patterns) {
+        if (other.equals(pattern) || !subsumes(other, pattern)) {
+          continue;
+        }
+        // Equivalent patterns cover each other, keep exactly one of them
+        if (!subsumes(pattern, other) || other.compareTo(pattern) < 0) {
+          covered = true;
+          break;
+        }
+      }
+      if (!covered) {
+        bindings.add(pattern);
+      }
+    }
+    return bindings;
+  }
+
+  private static String[] split(String key) {
+    return key.isEmpty() ? new String[0] : key.split("\\.", -1);
+  }
+
+  private static final class Node<T> {
+    final Map<String, Node<T>> children = new HashMap<>();
+    final List<T> values = new ArrayList<>();
+  }
+}
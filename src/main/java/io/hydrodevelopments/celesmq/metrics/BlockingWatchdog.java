@@ -0,0 +1,222 @@
+package io.hydrodevelopments.celesmq.metrics;
+
+import io.hydrodevelopments.celesmq.connection.SharedExecutors;
+import io.hydrodevelopments.celesmq.platform.Platform;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Finds code that blocks the main thread through the library, an opt-in debugging aid
+ * <p>
+ * Two things are reported, each by call site with a count:
+ * <ul>
+ *   <li>waiting on an unfinished future of the library ({@code join()}, {@code get()}) from a tick thread, which
+ *   stalls the tick until the broker answers</li>
+ *   <li>main thread listeners still running after the threshold, found by sampling their thread's stack once per
+ *   slow run, the top frame outside the JDK names the code it is stuck in</li>
+ * </ul>
+ * Each call site is logged the first time it is seen, {@link #getSummary()} lists all of them.
+ */
+public class BlockingWatchdog {
+
+  private static final String[] SKIPPED_PREFIXES = {"java.", "javax.", "jdk.", "sun.", BlockingWatchdog.class.getName(),
+    WatchedFuture.class.getName()};
+
+  private final Platform platform;
+  private final long threshold;
+  private final Logger logger;
+
+  private final Map<String, LongAdder> blockingCalls = new ConcurrentHashMap<>();
+  private final Map<String, LongAdder> slowHandlers = new ConcurrentHashMap<>();
+  private final Map<Thread, Running> running = new ConcurrentHashMap<>();
+  private ScheduledFuture<?> sampler;
+
+  /**
+   * Creates a watchdog
+   *
+   * @param platform    platform telling tick threads apart
+   * @param thresholdMs how long a main thread listener may run before its stack is sampled
+   */
+  public BlockingWatchdog(Platform platform, long thresholdMs) {
+    this.platform = platform;
+    this.threshold = TimeUnit.MILLISECONDS.toNanos(thresholdMs);
+    this.logger = platform.getLogger();
+  }
+
+  /**
+   * Creates a future that reports blocking waits on it from a tick thread
+   *
+   * @param watchdog the client's watchdog, null creates a plain future
+   */
+  public static <T> CompletableFuture<T> newFuture(BlockingWatchdog watchdog) {
+    return watchdog != null ? new WatchedFuture<>(watchdog) : new CompletableFuture<>();
+  }
+
+  /**
+   * Wraps a main thread task so its thread is sampled while it runs past the threshold
+   *
+   * @param source what the task handles, e.g. the subscription key
+   * @param task   the task to watch
+   */
+  public Runnable watch(String source, Runnable task) {
+    return () -> {
+      start();
+      Thread thread = Thread.currentThread();
+      // Tasks may nest, e.g. runSync running inline on the main thread
+      Running previous = running.put(thread, new Running(source, System.nanoTime()));
+      try {
+        task.run();
+      } finally {
+        if (previous != null) {
+          running.put(thread, previous);
+        } else {
+          running.remove(thread);
+        }
+      }
+    };
+  }
+
+  /**
+   * Records a wait on an unfinished future if it happens on a tick thread
+   */
+  void checkBlocking(CompletableFuture<?> future) {
+    if (future.isDone() || !platform.isMainThread()) {
+      return;
+    }
+    String callSite = StackWalker.getInstance()
+      .walk(frames -> frames.filter(frame -> !isSkipped(frame.getClassName()))
+        .findFirst()
+        .map(frame -> frame.getClassName() + "." + frame.getMethodName() + "(" + frame.getFileName() + ":"
+          + frame.getLineNumber() + ")")
+        .orElse("unknown"));
+    if (record(blockingCalls, callSite)) {
+      logger.warning("Main thread is waiting for a CelesMQ future at " + callSite
+        + ", use thenAccept or a callback instead of join() or get()");
+    }
+  }
+
+  private synchronized void start() {
+    if (sampler == null) {
+      long interval = Math.max(TimeUnit.NANOSECONDS.toMillis(threshold) / 2, 5);
+      sampler = SharedExecutors.scheduler().scheduleAtFixedRate(this::sample, interval, interval,
+        TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Stops sampling, a later task starts it again
+   */
+  public synchronized void stop() {
+    if (sampler != null) {
+      sampler.cancel(false);
+      sampler = null;
+    }
+  }
+
+  private void sample() {
+    long now = System.nanoTime();
+    running.forEach((thread, run) -> {
+      if (run.sampled || now - run.startedAt < threshold) {
+        return;
+      }
+      // One sample per slow run, so counts are runs and not sampling ticks
+      run.sampled = true;
+      String frame = "unknown";
+      for (StackTraceElement element : thread.getStackTrace()) {
+        if (!isSkipped(element.getClassName())) {
+          frame = element.toString();
+          break;
+        }
+      }
+      String callSite = run.source + " at " + frame;
+      if (record(slowHandlers, callSite)) {
+        logger.warning("Main thread listener for " + run.source + " has been running for over "
+          + TimeUnit.NANOSECONDS.toMillis(threshold) + "ms, currently at " + frame);
+      }
+    });
+  }
+
+  private static boolean isSkipped(String className) {
+    for (String prefix : SKIPPED_PREFIXES) {
+      if (className.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Counts a call site
+   *
+   * @return true if it was seen for the first time
+   */
+  private static boolean record(Map<String, LongAdder> sites, String callSite) {
+    boolean[] first = {false};
+    sites.computeIfAbsent(callSite, key -> {
+      first[0] = true;
+      return new LongAdder();
+    }).increment();
+    return first[0];
+  }
+
+  /**
+   * Gets the call sites that waited on unfinished futures from a tick thread, most frequent first
+   */
+  public Map<String, Long> getBlockingCalls() {
+    return sorted(blockingCalls);
+  }
+
+  /**
+   * Gets the listeners and frames that ran past the threshold on a tick thread, most frequent first
+   */
+  public Map<String, Long> getSlowHandlers() {
+    return sorted(slowHandlers);
+  }
+
+  private static Map<String, Long> sorted(Map<String, LongAdder> sites) {
+    Map<String, Long> result = new LinkedHashMap<>();
+    sites.entrySet().stream()
+      .sorted(Comparator.comparingLong((Map.Entry<String, LongAdder> entry) -> entry.getValue().sum()).reversed())
+      .forEach(entry -> result.put(entry.getKey(), entry.getValue().sum()));
+    return result;
+  }
+
+  /**
+   * Clears all recorded call sites
+   */
+  public void reset() {
+    blockingCalls.clear();
+    slowHandlers.clear();
+  }
+
+  /**
+   * Gets a formatted report of all recorded call sites
+   */
+  public String getSummary() {
+    StringBuilder summary = new StringBuilder("Main Thread Blocking:");
+    summary.append("\n  Blocking waits on futures:");
+    getBlockingCalls().forEach((site, count) -> summary.append("\n    ").append(count).append("x ").append(site));
+    summary.append("\n  Slow listeners (over ").append(TimeUnit.NANOSECONDS.toMillis(threshold)).append(" ms):");
+    getSlowHandlers().forEach((site, count) -> summary.append("\n    ").append(count).append("x ").append(site));
+    return summary.toString();
+  }
+
+  private static final class Running {
+    final String source;
+    final long startedAt;
+    volatile boolean sampled;
+
+    Running(String source, long startedAt) {
+      this.source = source;
+      this.startedAt = startedAt;
+    }
+  }
+}
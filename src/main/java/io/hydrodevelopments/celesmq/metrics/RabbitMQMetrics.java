@@ -1,5 +1,8 @@
 package io.hydrodevelopments.celesmq.metrics;
 
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.LongAdder;
 
@@ -19,6 +22,51 @@ public class RabbitMQMetrics {
   private final AtomicLong peakProcessingTime = new AtomicLong(0);
   private final AtomicLong startTime = new AtomicLong(System.currentTimeMillis());
 
+  // Broker flow control (connection.blocked)
+  private final LongAdder connectionBlocked = new LongAdder();
+  private final LongAdder publishesRejected = new LongAdder();
+  private final AtomicLong totalBlockedTime = new AtomicLong(0);
+  private final AtomicLong peakBlockedTime = new AtomicLong(0);
+
+  // Connection recovery
+  private final LongAdder recoveries = new LongAdder();
+  private final AtomicLong totalRecoveryTime = new AtomicLong(0);
+  private final AtomicLong peakRecoveryTime = new AtomicLong(0);
+  private final AtomicLong lastRecoveryTime = new AtomicLong(0);
+
+  // Subscription recovery
+  private final LongAdder subscriptionRecoveries = new LongAdder();
+  private final LongAdder subscriptionsRecovered = new LongAdder();
+  private final AtomicLong lastSubscriptionRecoveryTime = new AtomicLong(0);
+  private final AtomicLong peakSubscriptionRecoveryTime = new AtomicLong(0);
+
+  // TLS handshakes
+  // Retry of failed deliveries
+  private final LongAdder messagesRetried = new LongAdder();
+  private final LongAdder messagesParked = new LongAdder();
+
+  // Messages replaced by a newer one for the same key before they were handled
+  private final LongAdder messagesCoalesced = new LongAdder();
+
+  // Consumers paused because their listeners fell behind
+  private final LongAdder consumerPauses = new LongAdder();
+
+  // Best-effort messages dropped while the server was overloaded
+  private final LongAdder messagesShed = new LongAdder();
+
+  // Main thread time budget
+  private final LongAdder mainThreadDeferrals = new LongAdder();
+  private final LongAdder mainThreadOverruns = new LongAdder();
+  private final AtomicLong peakMainThreadTaskTime = new AtomicLong(0);
+
+  private final LongAdder tlsHandshakes = new LongAdder();
+  private final LongAdder tlsSessionsResumed = new LongAdder();
+  private final AtomicLong totalHandshakeTime = new AtomicLong(0);
+  private final AtomicLong peakHandshakeTime = new AtomicLong(0);
+
+  // Per-tenant publish scheduling on shared connections
+  private final Map<String, TenantMetrics> tenants = new ConcurrentHashMap<>();
+
   /**
    * Records a sent message
    */
@@ -41,15 +89,7 @@ public class RabbitMQMetrics {
   public void recordProcessed(long processingTimeMs) {
     messagesProcessed.increment();
     totalProcessingTime.addAndGet(processingTimeMs);
-
-    // Update peak time
-    long current;
-    do {
-      current = peakProcessingTime.get();
-      if (processingTimeMs <= current) {
-        break;
-      }
-    } while (!peakProcessingTime.compareAndSet(current, processingTimeMs));
+    updatePeak(peakProcessingTime, processingTimeMs);
   }
 
   /**
@@ -59,6 +99,122 @@ public class RabbitMQMetrics {
     messagesFailed.increment();
   }
 
+  /**
+   * Records a period during which the broker blocked the connection
+   */
+  public void recordBlocked(long blockedTimeMs) {
+    connectionBlocked.increment();
+    totalBlockedTime.addAndGet(blockedTimeMs);
+    updatePeak(peakBlockedTime, blockedTimeMs);
+  }
+
+  /**
+   * Records a completed connection recovery with the time from connection loss to recovery
+   */
+  public void recordRecovery(long recoveryTimeMs) {
+    recoveries.increment();
+    totalRecoveryTime.addAndGet(recoveryTimeMs);
+    lastRecoveryTime.set(recoveryTimeMs);
+    updatePeak(peakRecoveryTime, recoveryTimeMs);
+  }
+
+  /**
+   * Records re-creating subscriptions after a recovery, with the time taken and how many succeeded
+   */
+  public void recordSubscriptionRecovery(long recoveryTimeMs, int subscriptions) {
+    subscriptionRecoveries.increment();
+    subscriptionsRecovered.add(subscriptions);
+    lastSubscriptionRecoveryTime.set(recoveryTimeMs);
+    updatePeak(peakSubscriptionRecoveryTime, recoveryTimeMs);
+  }
+
+  /**
+   * Records a failed message sent to a delay queue for another attempt
+   */
+  public void recordRetried() {
+    messagesRetried.increment();
+  }
+
+  /**
+   * Records a message moved to a parking queue after its last retry failed
+   */
+  public void recordParked() {
+    messagesParked.increment();
+  }
+
+  /**
+   * Records a received message that was dropped because a newer one for the same key arrived first
+   */
+  public void recordCoalesced() {
+    messagesCoalesced.increment();
+  }
+
+  /**
+   * Records a consumer paused because too many received messages were waiting for its listeners
+   */
+  public void recordConsumerPaused() {
+    consumerPauses.increment();
+  }
+
+  /**
+   * Records a best-effort message dropped because the server was overloaded
+   */
+  public void recordShed() {
+    messagesShed.increment();
+  }
+
+  /**
+   * Records a tick whose main thread budget ran out with tasks left, which were deferred to the next tick
+   */
+  public void recordMainThreadDeferral() {
+    mainThreadDeferrals.increment();
+  }
+
+  /**
+   * Records a main thread task that alone took longer than the whole per-tick budget
+   */
+  public void recordMainThreadOverrun(long taskTimeMs) {
+    mainThreadOverruns.increment();
+    updatePeak(peakMainThreadTaskTime, taskTimeMs);
+  }
+
+  /**
+   * Records a completed TLS handshake (including TCP connect) and whether the session was resumed
+   */
+  public void recordTlsHandshake(long handshakeTimeMs, boolean resumed) {
+    tlsHandshakes.increment();
+    if (resumed) {
+      tlsSessionsResumed.increment();
+    }
+    totalHandshakeTime.addAndGet(handshakeTimeMs);
+    updatePeak(peakHandshakeTime, handshakeTimeMs);
+  }
+
+  /**
+   * Records a publish that was rejected because the connection was blocked
+   */
+  public void recordPublishRejected() {
+    publishesRejected.increment();
+  }
+
+  /**
+   * Gets the publish metrics for a tenant, creating them on first use
+   *
+   * @param tenant tenant name
+   */
+  public TenantMetrics getTenantMetrics(String tenant) {
+    return tenants.computeIfAbsent(tenant, name -> new TenantMetrics());
+  }
+
+  /**
+   * Gets the publish metrics of every tenant seen on this connection
+   *
+   * @return map of tenant name to metrics, sorted by name
+   */
+  public Map<String, TenantMetrics> getTenants() {
+    return new TreeMap<>(tenants);
+  }
+
   /**
    * Gets total messages sent
    */
@@ -119,6 +275,182 @@ public class RabbitMQMetrics {
     return peakProcessingTime.get();
   }
 
+  /**
+   * Gets how many times the broker blocked the connection
+   */
+  public long getBlockedCount() {
+    return connectionBlocked.sum();
+  }
+
+  /**
+   * Gets total time the connection spent blocked in milliseconds
+   */
+  public long getTotalBlockedTime() {
+    return totalBlockedTime.get();
+  }
+
+  /**
+   * Gets the longest single blocked period in milliseconds
+   */
+  public long getPeakBlockedTime() {
+    return peakBlockedTime.get();
+  }
+
+  /**
+   * Gets total publishes rejected while the connection was blocked
+   */
+  public long getPublishesRejected() {
+    return publishesRejected.sum();
+  }
+
+  /**
+   * Gets how many times the connection recovered after being lost
+   */
+  public long getRecoveryCount() {
+    return recoveries.sum();
+  }
+
+  /**
+   * Gets average time to recover in milliseconds
+   */
+  public double getAverageRecoveryTime() {
+    long count = recoveries.sum();
+    if (count == 0) {
+      return 0;
+    }
+    return (double) totalRecoveryTime.get() / count;
+  }
+
+  /**
+   * Gets the longest time to recover in milliseconds
+   */
+  public long getPeakRecoveryTime() {
+    return peakRecoveryTime.get();
+  }
+
+  /**
+   * Gets the most recent time to recover in milliseconds
+   */
+  public long getLastRecoveryTime() {
+    return lastRecoveryTime.get();
+  }
+
+  /**
+   * Gets how many times subscriptions were re-created after a recovery
+   */
+  public long getSubscriptionRecoveryCount() {
+    return subscriptionRecoveries.sum();
+  }
+
+  /**
+   * Gets the total number of subscriptions re-created after recoveries
+   */
+  public long getSubscriptionsRecovered() {
+    return subscriptionsRecovered.sum();
+  }
+
+  /**
+   * Gets the time the most recent subscription recovery took in milliseconds
+   */
+  public long getLastSubscriptionRecoveryTime() {
+    return lastSubscriptionRecoveryTime.get();
+  }
+
+  /**
+   * Gets the longest subscription recovery in milliseconds
+   */
+  public long getPeakSubscriptionRecoveryTime() {
+    return peakSubscriptionRecoveryTime.get();
+  }
+
+  /**
+   * Gets the number of failed messages scheduled for a delayed retry
+   */
+  public long getMessagesRetried() {
+    return messagesRetried.sum();
+  }
+
+  /**
+   * Gets the number of messages moved to parking queues after exhausting their retries
+   */
+  public long getMessagesParked() {
+    return messagesParked.sum();
+  }
+
+  /**
+   * Gets the number of received messages superseded by a newer one for the same key before being handled
+   */
+  public long getMessagesCoalesced() {
+    return messagesCoalesced.sum();
+  }
+
+  /**
+   * Gets how many times a consumer was paused for backpressure
+   */
+  public long getConsumerPauses() {
+    return consumerPauses.sum();
+  }
+
+  /**
+   * Gets the number of best-effort messages dropped under server load
+   */
+  public long getMessagesShed() {
+    return messagesShed.sum();
+  }
+
+  /**
+   * Gets the number of ticks whose main thread budget ran out before all tasks ran
+   */
+  public long getMainThreadDeferrals() {
+    return mainThreadDeferrals.sum();
+  }
+
+  /**
+   * Gets the number of main thread tasks that took longer than the per-tick budget
+   */
+  public long getMainThreadOverruns() {
+    return mainThreadOverruns.sum();
+  }
+
+  /**
+   * Gets the longest main thread task that overran the budget in milliseconds
+   */
+  public long getPeakMainThreadTaskTime() {
+    return peakMainThreadTaskTime.get();
+  }
+
+  /**
+   * Gets the number of completed TLS handshakes
+   */
+  public long getTlsHandshakes() {
+    return tlsHandshakes.sum();
+  }
+
+  /**
+   * Gets the number of TLS handshakes that resumed a cached session
+   */
+  public long getTlsSessionsResumed() {
+    return tlsSessionsResumed.sum();
+  }
+
+  /**
+   * Gets average TLS connect and handshake time in milliseconds
+   */
+  public double getAverageHandshakeTime() {
+    long count = tlsHandshakes.sum();
+    if (count == 0) {
+      return 0;
+    }
+    return (double) totalHandshakeTime.get() / count;
+  }
+
+  /**
+   * Gets the longest TLS connect and handshake time in milliseconds
+   */
+  public long getPeakHandshakeTime() {
+    return peakHandshakeTime.get();
+  }
+
   /**
    * Gets messages per second rate
    */
@@ -171,6 +503,31 @@ public class RabbitMQMetrics {
     bytesSent.reset();
     totalProcessingTime.set(0);
     peakProcessingTime.set(0);
+    connectionBlocked.reset();
+    publishesRejected.reset();
+    totalBlockedTime.set(0);
+    peakBlockedTime.set(0);
+    recoveries.reset();
+    totalRecoveryTime.set(0);
+    peakRecoveryTime.set(0);
+    lastRecoveryTime.set(0);
+    subscriptionRecoveries.reset();
+    subscriptionsRecovered.reset();
+    lastSubscriptionRecoveryTime.set(0);
+    peakSubscriptionRecoveryTime.set(0);
+    messagesRetried.reset();
+    messagesParked.reset();
+    messagesCoalesced.reset();
+    consumerPauses.reset();
+    messagesShed.reset();
+    mainThreadDeferrals.reset();
+    mainThreadOverruns.reset();
+    peakMainThreadTaskTime.set(0);
+    tlsHandshakes.reset();
+    tlsSessionsResumed.reset();
+    totalHandshakeTime.set(0);
+    peakHandshakeTime.set(0);
+    tenants.values().forEach(TenantMetrics::reset);
     startTime.set(System.currentTimeMillis());
   }
 
@@ -178,6 +535,16 @@ public class RabbitMQMetrics {
    * Gets a formatted summary of metrics
    */
   public String getSummary() {
+    StringBuilder tenantLines = new StringBuilder();
+    getTenants().forEach((name, tenant) -> tenantLines.append(String.format(
+      "\n  Tenant %s: %d published (%.2f/s), %d throttled, avg queue delay %.2f ms, peak %d ms",
+      name,
+      tenant.getPublished(),
+      tenant.getPublishesPerSecond(),
+      tenant.getThrottled(),
+      tenant.getAverageQueueDelay(),
+      tenant.getPeakQueueDelay())));
+
     return String.format("RabbitMQ Metrics:\n" +
         "  Messages Sent: %d\n" +
         "  Messages Received: %d\n" +
@@ -188,6 +555,15 @@ public class RabbitMQMetrics {
         "  Peak Processing Time: %d ms\n" +
         "  Messages/Second: %.2f\n" +
         "  Throughput: %.2f KB/s\n" +
+        "  Connection Blocked: %d times (%d ms total, %d publishes rejected)\n" +
+        "  Recoveries: %d (avg %.0f ms, peak %d ms)\n" +
+        "  Subscription Recovery: last %d ms, peak %d ms (%d subscriptions re-created)\n" +
+        "  Retries: %d retried, %d parked\n" +
+        "  Coalesced: %d received\n" +
+        "  Consumer Pauses: %d\n" +
+        "  Shed Under Load: %d\n" +
+        "  Main Thread Budget: %d deferred ticks, %d overruns (peak %d ms)\n" +
+        "  TLS Handshakes: %d (%d resumed, avg %.0f ms)\n" +
         "  Uptime: %d seconds",
       getMessagesSent(),
       getMessagesReceived(),
@@ -198,6 +574,117 @@ public class RabbitMQMetrics {
       getPeakProcessingTime(),
       getMessagesPerSecond(),
       getThroughputBytesPerSecond() / 1024,
-      getUptimeMs() / 1000);
+      getBlockedCount(),
+      getTotalBlockedTime(),
+      getPublishesRejected(),
+      getRecoveryCount(),
+      getAverageRecoveryTime(),
+      getPeakRecoveryTime(),
+      getLastSubscriptionRecoveryTime(),
+      getPeakSubscriptionRecoveryTime(),
+      getSubscriptionsRecovered(),
+      getMessagesRetried(),
+      getMessagesParked(),
+      getMessagesCoalesced(),
+      getConsumerPauses(),
+      getMessagesShed(),
+      getMainThreadDeferrals(),
+      getMainThreadOverruns(),
+      getPeakMainThreadTaskTime(),
+      getTlsHandshakes(),
+      getTlsSessionsResumed(),
+      getAverageHandshakeTime(),
+      getUptimeMs() / 1000) + tenantLines;
+  }
+
+  /**
+   * Raises a peak value if the sample exceeds it
+   */
+  private static void updatePeak(AtomicLong peak, long sample) {
+    long current;
+    do {
+      current = peak.get();
+      if (sample <= current) {
+        break;
+      }
+    } while (!peak.compareAndSet(current, sample));
+  }
+
+  /**
+   * Publish throughput and queueing delay of one tenant sharing a connection
+   */
+  public static class TenantMetrics {
+    private final LongAdder published = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final AtomicLong totalQueueDelay = new AtomicLong(0);
+    private final AtomicLong peakQueueDelay = new AtomicLong(0);
+    private final AtomicLong startTime = new AtomicLong(System.currentTimeMillis());
+
+    /**
+     * Records a publish handed to the channel after waiting in the tenant queue
+     */
+    public void recordPublished(long queueDelayMs) {
+      published.increment();
+      totalQueueDelay.addAndGet(queueDelayMs);
+      updatePeak(peakQueueDelay, queueDelayMs);
+    }
+
+    /**
+     * Records the tenant running out of rate quota while it still had work, counted once until it sends again
+     */
+    public void recordThrottled() {
+      throttled.increment();
+    }
+
+    /**
+     * Gets total publishes dispatched for this tenant
+     */
+    public long getPublished() {
+      return published.sum();
+    }
+
+    /**
+     * Gets how often the tenant ran out of rate quota with publishes still queued
+     */
+    public long getThrottled() {
+      return throttled.sum();
+    }
+
+    /**
+     * Gets average time publishes spent queued in milliseconds
+     */
+    public double getAverageQueueDelay() {
+      long count = published.sum();
+      if (count == 0) {
+        return 0;
+      }
+      return (double) totalQueueDelay.get() / count;
+    }
+
+    /**
+     * Gets the longest time a publish spent queued in milliseconds
+     */
+    public long getPeakQueueDelay() {
+      return peakQueueDelay.get();
+    }
+
+    /**
+     * Gets publishes per second since creation or the last reset
+     */
+    public double getPublishesPerSecond() {
+      long elapsed = (System.currentTimeMillis() - startTime.get()) / 1000;
+      if (elapsed == 0) {
+        return 0;
+      }
+      return (double) published.sum() / elapsed;
+    }
+
+    void reset() {
+      published.reset();
+      throttled.reset();
+      totalQueueDelay.set(0);
+      peakQueueDelay.set(0);
+      startTime.set(System.currentTimeMillis());
+    }
   }
 }
@@ -0,0 +1,39 @@
+package io.hydrodevelopments.celesmq.metrics;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Future that reports blocking waits on it from a tick thread to a {@link BlockingWatchdog}
+ * Dependent futures ({@code thenApply} and friends) are watched too
+ */
+class WatchedFuture<T> extends CompletableFuture<T> {
+
+  private final BlockingWatchdog watchdog;
+
+  WatchedFuture(BlockingWatchdog watchdog) {
+    this.watchdog = watchdog;
+  }
+
+  @Override public T get() throws InterruptedException, ExecutionException {
+    watchdog.checkBlocking(this);
+    return super.get();
+  }
+
+  @Override public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException,
+    TimeoutException {
+    watchdog.checkBlocking(this);
+    return super.get(timeout, unit);
+  }
+
+  @Override public T join() {
+    watchdog.checkBlocking(this);
+    return super.join();
+  }
+
+  @Override public <U> CompletableFuture<U> newIncompleteFuture() {
+    return new WatchedFuture<>(watchdog);
+  }
+}
@@ -12,6 +12,7 @@ public class BungeeCordPlatform implements Platform {
 
   private final Plugin plugin;
   private final TaskScheduler scheduler;
+  private final LoadMonitor loadMonitor = new LoadMonitor(this::runAsync, false);
 
   public BungeeCordPlatform(Plugin plugin) {
     this.plugin = plugin;
@@ -26,10 +27,22 @@ public class BungeeCordPlatform implements Platform {
     task.run();
   }
 
+  @Override public boolean hasMainThread() {
+    return false;
+  }
+
   @Override public void runAsync(Runnable task) {
     scheduler.runAsync(plugin, task);
   }
 
+  @Override public double getLoad() {
+    return loadMonitor.getLoad();
+  }
+
+  @Override public void stopLoadMonitor() {
+    loadMonitor.stop();
+  }
+
   @Override public PlatformType getType() {
     return PlatformType.BUNGEECORD;
   }
@@ -0,0 +1,118 @@
+package io.hydrodevelopments.celesmq.platform;
+
+import java.util.Objects;
+
+/**
+ * Where a main thread task has to run on platforms that tick regions or instances on separate threads
+ * <p>
+ * Folia runs each region of the world on its own thread and Minestom ticks instances in parallel, so a handler that
+ * touches an entity or a chunk must run on the thread owning it. Platforms with a single main thread ignore the
+ * affinity. Targets are the platform's own objects, kept untyped so this class loads on every platform.
+ */
+public final class DispatchAffinity {
+
+  private static final DispatchAffinity GLOBAL = new DispatchAffinity(Kind.GLOBAL, null, 0, 0);
+
+  private final Kind kind;
+  private final Object target;
+  private final int chunkX;
+  private final int chunkZ;
+
+  private DispatchAffinity(Kind kind, Object target, int chunkX, int chunkZ) {
+    this.kind = kind;
+    this.target = target;
+    this.chunkX = chunkX;
+    this.chunkZ = chunkZ;
+  }
+
+  /**
+   * Runs on the main thread, or Folia's global region
+   */
+  public static DispatchAffinity global() {
+    return GLOBAL;
+  }
+
+  /**
+   * Runs on the thread owning an entity, wherever it moves meanwhile
+   *
+   * @param entity a Bukkit or Minestom entity
+   */
+  public static DispatchAffinity entity(Object entity) {
+    return new DispatchAffinity(Kind.ENTITY, Objects.requireNonNull(entity, "entity"), 0, 0);
+  }
+
+  /**
+   * Runs on the thread owning a location's chunk
+   *
+   * @param location a Bukkit location
+   */
+  public static DispatchAffinity location(Object location) {
+    return new DispatchAffinity(Kind.LOCATION, Objects.requireNonNull(location, "location"), 0, 0);
+  }
+
+  /**
+   * Runs on the thread owning a chunk
+   *
+   * @param world  a Bukkit world or Minestom instance
+   * @param chunkX chunk x coordinate
+   * @param chunkZ chunk z coordinate
+   */
+  public static DispatchAffinity chunk(Object world, int chunkX, int chunkZ) {
+    return new DispatchAffinity(Kind.CHUNK, Objects.requireNonNull(world, "world"), chunkX, chunkZ);
+  }
+
+  /**
+   * Runs on the thread ticking a whole world, Folia ticks world-wide state on the global region
+   *
+   * @param world a Bukkit world or Minestom instance
+   */
+  public static DispatchAffinity world(Object world) {
+    return new DispatchAffinity(Kind.WORLD, Objects.requireNonNull(world, "world"), 0, 0);
+  }
+
+  /**
+   * Runs on the thread ticking a Minestom instance, same as {@link #world(Object)}
+   *
+   * @param instance a Minestom instance
+   */
+  public static DispatchAffinity instance(Object instance) {
+    return world(instance);
+  }
+
+  public Kind getKind() {
+    return kind;
+  }
+
+  /**
+   * Gets the entity, location or world, null for {@link Kind#GLOBAL}
+   */
+  public Object getTarget() {
+    return target;
+  }
+
+  public int getChunkX() {
+    return chunkX;
+  }
+
+  public int getChunkZ() {
+    return chunkZ;
+  }
+
+  @Override public String toString() {
+    if (kind == Kind.GLOBAL) {
+      return "global";
+    }
+    return kind == Kind.CHUNK ? "chunk " + chunkX + "," + chunkZ + " of " + target : kind + " " + target;
+  }
+
+  /**
+   * What a task is tied to
+   */
+  public enum Kind {
+    GLOBAL,
+    ENTITY,
+    LOCATION,
+    CHUNK,
+    WORLD
+  }
+}
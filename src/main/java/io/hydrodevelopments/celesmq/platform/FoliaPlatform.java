@@ -1,23 +1,43 @@
 package io.hydrodevelopments.celesmq.platform;
 
 import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
 import org.bukkit.plugin.Plugin;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.function.Consumer;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Platform implementation for Folia
  * <p>
- * Folia is Paper's experimental multithreaded fork using regional multithreading. This platform implementation uses
- * Folia's global region scheduler for thread-safe RabbitMQ operations.
+ * Folia is Paper's experimental multithreaded fork using regional multithreading. Plain main thread tasks run on
+ * Folia's global region, tasks with a {@link DispatchAffinity} run on the region owning their entity or chunk, so
+ * handlers for different regions run in parallel.
  * <p>
- * Note: Folia requires all operations to be scheduled on appropriate regions. RabbitMQ operations are inherently async
- * and thread-safe, so we use the global region for scheduling.
+ * The schedulers are resolved once through method handles, the plugin also compiles against plain Bukkit.
  */
 public class FoliaPlatform implements Platform {
 
+  private static final String SCHEDULER_PACKAGE = "io.papermc.paper.threadedregions.scheduler.";
+
   private final Plugin plugin;
   private final Logger logger;
+  // Regions tick independently and the global tick time is not exposed, so the global region's lag is measured
+  private final LoadMonitor loadMonitor = new LoadMonitor(this::runSync, true);
+
+  // Bound to their scheduler instances, null if Folia's schedulers are unavailable
+  private final MethodHandle asyncRunNow;
+  private final MethodHandle globalExecute;
+  private final MethodHandle regionExecuteChunk;
+  private final MethodHandle regionExecuteLocation;
+  private final MethodHandle entityGetScheduler;
+  private final MethodHandle entityExecute;
 
   /**
    * Creates a new Folia platform adapter
@@ -27,36 +47,148 @@ public class FoliaPlatform implements Platform {
   public FoliaPlatform(Plugin plugin) {
     this.plugin = plugin;
     this.logger = plugin.getLogger();
+
+    MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+    MethodHandle asyncRunNow = null;
+    MethodHandle globalExecute = null;
+    MethodHandle regionExecuteChunk = null;
+    MethodHandle regionExecuteLocation = null;
+    MethodHandle entityGetScheduler = null;
+    MethodHandle entityExecute = null;
+    try {
+      Class<?> asyncScheduler = Class.forName(SCHEDULER_PACKAGE + "AsyncScheduler");
+      Class<?> globalScheduler = Class.forName(SCHEDULER_PACKAGE + "GlobalRegionScheduler");
+      Class<?> regionScheduler = Class.forName(SCHEDULER_PACKAGE + "RegionScheduler");
+      Class<?> entityScheduler = Class.forName(SCHEDULER_PACKAGE + "EntityScheduler");
+      Class<?> scheduledTask = Class.forName(SCHEDULER_PACKAGE + "ScheduledTask");
+
+      asyncRunNow = lookup.findVirtual(asyncScheduler, "runNow",
+          MethodType.methodType(scheduledTask, Plugin.class, Consumer.class))
+        .bindTo(lookup.findStatic(Bukkit.class, "getAsyncScheduler", MethodType.methodType(asyncScheduler)).invoke());
+      globalExecute = lookup.findVirtual(globalScheduler, "execute",
+          MethodType.methodType(void.class, Plugin.class, Runnable.class))
+        .bindTo(lookup.findStatic(Bukkit.class, "getGlobalRegionScheduler", MethodType.methodType(globalScheduler))
+          .invoke());
+
+      Object regions =
+        lookup.findStatic(Bukkit.class, "getRegionScheduler", MethodType.methodType(regionScheduler)).invoke();
+      regionExecuteChunk = lookup.findVirtual(regionScheduler, "execute",
+        MethodType.methodType(void.class, Plugin.class, World.class, int.class, int.class, Runnable.class))
+        .bindTo(regions);
+      regionExecuteLocation = lookup.findVirtual(regionScheduler, "execute",
+        MethodType.methodType(void.class, Plugin.class, Location.class, Runnable.class)).bindTo(regions);
+
+      entityGetScheduler = lookup.findVirtual(Entity.class, "getScheduler", MethodType.methodType(entityScheduler));
+      entityExecute = lookup.findVirtual(entityScheduler, "execute",
+        MethodType.methodType(boolean.class, Plugin.class, Runnable.class, Runnable.class, long.class));
+    } catch (Throwable e) {
+      logger.log(Level.WARNING, "Folia schedulers unavailable, falling back to the Bukkit scheduler", e);
+      asyncRunNow = null;
+      globalExecute = null;
+      regionExecuteChunk = null;
+      regionExecuteLocation = null;
+      entityGetScheduler = null;
+      entityExecute = null;
+    }
+
+    this.asyncRunNow = asyncRunNow;
+    this.globalExecute = globalExecute;
+    this.regionExecuteChunk = regionExecuteChunk;
+    this.regionExecuteLocation = regionExecuteLocation;
+    this.entityGetScheduler = entityGetScheduler;
+    this.entityExecute = entityExecute;
   }
 
   @Override public void runAsync(Runnable task) {
-    // Folia's async scheduler for non-world-specific tasks
-    try {
-      // Try Folia's async scheduler first
-      Class<?> asyncScheduler = Class.forName("io.papermc.paper.threadedregions.scheduler.AsyncScheduler");
-      Object scheduler = Bukkit.class.getMethod("getAsyncScheduler").invoke(null);
-      asyncScheduler.getMethod("runNow", Plugin.class, Runnable.class).invoke(scheduler, plugin, (Runnable) task::run);
-    } catch (Exception e) {
-      // Fallback to standard async if Folia's async scheduler is unavailable
+    if (asyncRunNow == null) {
       Bukkit.getScheduler().runTaskAsynchronously(plugin, task);
+      return;
+    }
+    try {
+      asyncRunNow.invoke(plugin, (Consumer<Object>) scheduledTask -> task.run());
+    } catch (Throwable e) {
+      throw schedulingFailed(e);
     }
   }
 
   @Override public void runSync(Runnable task) {
-    // Use Folia's global region scheduler
-    try {
-      // Try Folia's global region scheduler
-      Class<?> globalRegionScheduler =
-        Class.forName("io.papermc.paper.threadedregions.scheduler.GlobalRegionScheduler");
-      Object scheduler = Bukkit.class.getMethod("getGlobalRegionScheduler").invoke(null);
-      globalRegionScheduler.getMethod("run", Plugin.class, Runnable.class)
-        .invoke(scheduler, plugin, (Runnable) task::run);
-    } catch (Exception e) {
-      // Fallback to standard sync if Folia's global region scheduler is unavailable
+    if (globalExecute == null) {
       Bukkit.getScheduler().runTask(plugin, task);
+      return;
+    }
+    try {
+      globalExecute.invoke(plugin, task);
+    } catch (Throwable e) {
+      throw schedulingFailed(e);
     }
   }
 
+  @Override public void runSync(DispatchAffinity affinity, Runnable task) {
+    Object target = affinity.getTarget();
+    if (globalExecute == null || target == null) {
+      runSync(task);
+      return;
+    }
+
+    try {
+      switch (affinity.getKind()) {
+        case ENTITY:
+          if (target instanceof Entity) {
+            // A removed entity retires its scheduler, the message is then handled on the global region
+            Object scheduler = entityGetScheduler.invoke((Entity) target);
+            boolean scheduled = (boolean) entityExecute.invoke(scheduler, plugin, task, (Runnable) () -> runSync(task),
+              1L);
+            if (!scheduled) {
+              runSync(task);
+            }
+            return;
+          }
+          break;
+        case LOCATION:
+          if (target instanceof Location) {
+            regionExecuteLocation.invoke(plugin, (Location) target, task);
+            return;
+          }
+          break;
+        case CHUNK:
+          if (target instanceof World) {
+            regionExecuteChunk.invoke(plugin, (World) target, affinity.getChunkX(), affinity.getChunkZ(), task);
+            return;
+          }
+          break;
+        default:
+          // World-wide state (time, weather) belongs to the global region
+          break;
+      }
+    } catch (Throwable e) {
+      throw schedulingFailed(e);
+    }
+    runSync(task);
+  }
+
+  private static RuntimeException schedulingFailed(Throwable e) {
+    if (e instanceof RuntimeException) {
+      return (RuntimeException) e;
+    }
+    if (e instanceof Error) {
+      throw (Error) e;
+    }
+    return new IllegalStateException("Failed to schedule task on Folia", e);
+  }
+
+  @Override public boolean isMainThread() {
+    // True on the global region and every region thread
+    return Bukkit.isPrimaryThread();
+  }
+
+  @Override public double getLoad() {
+    return loadMonitor.getLoad();
+  }
+
+  @Override public void stopLoadMonitor() {
+    loadMonitor.stop();
+  }
+
   @Override public Logger getLogger() {
     return logger;
   }
@@ -68,4 +200,4 @@ public class FoliaPlatform implements Platform {
   @Override public String getName() {
     return "Folia";
   }
-}
\ No newline at end of file
+}
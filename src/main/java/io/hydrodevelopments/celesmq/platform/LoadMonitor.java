@@ -0,0 +1,103 @@
+package io.hydrodevelopments.celesmq.platform;
+
+import io.hydrodevelopments.celesmq.connection.SharedExecutors;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Estimates load from scheduler lag, for platforms without a tick time API
+ * <p>
+ * Twice a second a probe task is handed to the platform's scheduler and the time until it runs is measured. On a tick
+ * based scheduler the probe waits half a tick on average while the server keeps 20 TPS, so lag below that reads as no
+ * load at all and only overrunning ticks show up. On proxies the lag of the async scheduler is compared with the same
+ * 50ms budget.
+ */
+public class LoadMonitor {
+
+  /**
+   * Tick budget in milliseconds at 20 TPS
+   */
+  private static final double TICK_MS = 50;
+
+  private static final long SAMPLE_INTERVAL_MS = 500;
+
+  private final Consumer<Runnable> scheduler;
+  private final boolean tickBased;
+
+  private volatile double averageLag;
+  private volatile long probeSentAt;
+  private ScheduledFuture<?> sampler;
+
+  /**
+   * Creates a load monitor
+   *
+   * @param scheduler hands a probe task to the scheduler being measured, e.g. {@code platform::runSync}
+   * @param tickBased whether the scheduler runs tasks once per tick
+   */
+  public LoadMonitor(Consumer<Runnable> scheduler, boolean tickBased) {
+    this.scheduler = scheduler;
+    this.tickBased = tickBased;
+  }
+
+  /**
+   * Gets the estimated load, starting the measurement on first use
+   *
+   * @return 0 while the scheduler keeps up, 1 when it lags by a full tick budget, more when it lags further
+   */
+  public double getLoad() {
+    start();
+    double lag = averageLag;
+    long sentAt = probeSentAt;
+    if (sentAt != 0) {
+      // A probe stuck behind a frozen tick counts as soon as it is overdue
+      lag = Math.max(lag, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sentAt));
+    }
+
+    if (!tickBased) {
+      return lag / TICK_MS;
+    }
+    // Probes wait half a tick on average, so the tick interval is about twice the lag
+    double tickInterval = lag * 2;
+    return tickInterval > TICK_MS * 1.2 ? tickInterval / TICK_MS : 0;
+  }
+
+  private synchronized void start() {
+    if (sampler == null) {
+      sampler = SharedExecutors.scheduler().scheduleAtFixedRate(this::probe, 0, SAMPLE_INTERVAL_MS,
+        TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Stops probing, the next {@link #getLoad()} starts it again
+   */
+  public synchronized void stop() {
+    if (sampler != null) {
+      sampler.cancel(false);
+      sampler = null;
+    }
+    averageLag = 0;
+    probeSentAt = 0;
+  }
+
+  private void probe() {
+    if (probeSentAt != 0) {
+      // The previous probe has not run yet
+      return;
+    }
+    long sentAt = System.nanoTime();
+    probeSentAt = sentAt;
+    try {
+      scheduler.accept(() -> {
+        double lag = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sentAt) / 1000.0;
+        averageLag = averageLag == 0 ? lag : averageLag * 0.7 + lag * 0.3;
+        probeSentAt = 0;
+      });
+    } catch (RuntimeException e) {
+      // Scheduler unavailable, e.g. while the plugin is disabled
+      probeSentAt = 0;
+    }
+  }
+}
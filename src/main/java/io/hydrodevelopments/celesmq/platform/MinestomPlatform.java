@@ -1,6 +1,9 @@
 package io.hydrodevelopments.celesmq.platform;
 
 import net.minestom.server.MinecraftServer;
+import net.minestom.server.thread.TickSchedulerThread;
+import net.minestom.server.thread.TickThread;
+import net.minestom.server.timer.Schedulable;
 import net.minestom.server.timer.TaskSchedule;
 
 import java.util.logging.Logger;
@@ -10,10 +13,14 @@ import java.util.logging.Logger;
  *
  * Minestom is a modern, from-scratch Minecraft server implementation
  * with a focus on performance and extensibility.
+ *
+ * Instances and entities tick on the threads of their chunks, tasks with a
+ * {@link DispatchAffinity} run on their instance's or entity's own scheduler.
  */
 public class MinestomPlatform implements Platform {
 
   private final Logger logger;
+  private final LoadMonitor loadMonitor = new LoadMonitor(this::runSync, true);
 
   /**
    * Creates a new Minestom platform adapter
@@ -43,6 +50,35 @@ public class MinestomPlatform implements Platform {
       .scheduleTask(task, TaskSchedule.tick(1), TaskSchedule.stop());
   }
 
+  @Override
+  public void runSync(DispatchAffinity affinity, Runnable task) {
+    // Instances and entities are Schedulable, their scheduler runs during their own tick
+    Object target = affinity.getTarget();
+    if ((affinity.getKind() == DispatchAffinity.Kind.ENTITY || affinity.getKind() == DispatchAffinity.Kind.CHUNK
+      || affinity.getKind() == DispatchAffinity.Kind.WORLD) && target instanceof Schedulable) {
+      ((Schedulable) target).scheduler().scheduleNextTick(task);
+    } else {
+      runSync(task);
+    }
+  }
+
+  @Override
+  public boolean isMainThread() {
+    // The scheduler thread runs the server tick, tick threads run instances and their chunks
+    Thread thread = Thread.currentThread();
+    return thread instanceof TickSchedulerThread || thread instanceof TickThread;
+  }
+
+  @Override
+  public double getLoad() {
+    return loadMonitor.getLoad();
+  }
+
+  @Override
+  public void stopLoadMonitor() {
+    loadMonitor.stop();
+  }
+
   @Override
   public Logger getLogger() {
     return logger;
@@ -56,6 +56,15 @@ public class NukkitPlatform implements Platform {
     server.getScheduler().scheduleTask(plugin, task);
   }
 
+  @Override public boolean isMainThread() {
+    return server.isPrimaryThread();
+  }
+
+  @Override public double getLoad() {
+    // Tick usage is the percentage of the tick budget in use
+    return server.getTickUsage() / 100.0;
+  }
+
   @Override public Logger getLogger() {
     return logger;
   }
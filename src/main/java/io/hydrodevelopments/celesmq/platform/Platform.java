@@ -21,12 +21,65 @@ public interface Platform {
    */
   void runSync(Runnable task);
 
+  /**
+   * Executes a task on the thread owning the affinity's entity, chunk or world
+   * Platforms with a single main thread run it like {@link #runSync(Runnable)}
+   * @param affinity what the task touches
+   * @param task the task to execute
+   */
+  default void runSync(DispatchAffinity affinity, Runnable task) {
+    runSync(task);
+  }
+
+  /**
+   * Executes a task on the main thread during the next tick, even when called from the main thread
+   * Platforms without a main thread run it right away
+   * @param task the task to execute
+   */
+  default void runNextTick(Runnable task) {
+    runSync(task);
+  }
+
+  /**
+   * Checks if the platform has a ticking main thread, proxies do not
+   * @return true for game servers
+   */
+  default boolean hasMainThread() {
+    return true;
+  }
+
+  /**
+   * Checks if the calling thread runs ticks, where blocking stalls the server
+   * On Folia and Minestom this includes region and instance tick threads
+   * @return true on a tick thread, always false on proxies
+   */
+  default boolean isMainThread() {
+    return false;
+  }
+
   /**
    * Executes a task asynchronously
    * @param task the task to execute
    */
   void runAsync(Runnable task);
 
+  /**
+   * Gets how loaded the server is, as a fraction of the 50ms tick budget
+   * Paper, Sponge and Nukkit report their tick time, other platforms estimate it from scheduler lag
+   * Used to scale back message handling before the server drops below 20 TPS
+   * @return 0 when idle or unknown, 1 when ticks use their full budget, above 1 while lagging
+   */
+  default double getLoad() {
+    return 0;
+  }
+
+  /**
+   * Stops the background load measurement, called when a client disconnects
+   * A later {@link #getLoad()} starts it again
+   */
+  default void stopLoadMonitor() {
+  }
+
   /**
    * Gets the platform type
    * @return PlatformType enum value
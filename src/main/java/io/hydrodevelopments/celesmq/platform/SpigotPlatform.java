@@ -1,7 +1,12 @@
 package io.hydrodevelopments.celesmq.platform;
 
 import org.bukkit.Bukkit;
+import org.bukkit.Server;
 import org.bukkit.plugin.java.JavaPlugin;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.logging.Logger;
 
 /**
@@ -9,12 +14,27 @@ import java.util.logging.Logger;
  */
 public class SpigotPlatform implements Platform {
 
+  /**
+   * Paper's Server#getAverageTickTime(), or null on Spigot
+   */
+  private static final MethodHandle AVERAGE_TICK_TIME = findAverageTickTime();
+
   private final JavaPlugin plugin;
+  private volatile LoadMonitor loadMonitor;
 
   public SpigotPlatform(JavaPlugin plugin) {
     this.plugin = plugin;
   }
 
+  private static MethodHandle findAverageTickTime() {
+    try {
+      return MethodHandles.publicLookup().findVirtual(Server.class, "getAverageTickTime",
+        MethodType.methodType(double.class));
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
   @Override public Logger getLogger() {
     return plugin.getLogger();
   }
@@ -27,10 +47,43 @@ public class SpigotPlatform implements Platform {
     }
   }
 
+  @Override public boolean isMainThread() {
+    return Bukkit.isPrimaryThread();
+  }
+
+  @Override public void runNextTick(Runnable task) {
+    Bukkit.getScheduler().runTask(plugin, task);
+  }
+
   @Override public void runAsync(Runnable task) {
     Bukkit.getScheduler().runTaskAsynchronously(plugin, task);
   }
 
+  @Override public double getLoad() {
+    if (AVERAGE_TICK_TIME != null) {
+      try {
+        return (double) AVERAGE_TICK_TIME.invoke(Bukkit.getServer()) / 50.0;
+      } catch (Throwable e) {
+        // Fall through to the lag estimate
+      }
+    }
+    if (loadMonitor == null) {
+      synchronized (this) {
+        if (loadMonitor == null) {
+          loadMonitor = new LoadMonitor(this::runSync, true);
+        }
+      }
+    }
+    return loadMonitor.getLoad();
+  }
+
+  @Override public void stopLoadMonitor() {
+    LoadMonitor monitor = loadMonitor;
+    if (monitor != null) {
+      monitor.stop();
+    }
+  }
+
   @Override public PlatformType getType() {
     return PlatformType.SPIGOT;
   }
@@ -52,6 +52,16 @@ public class SpongePlatform implements Platform {
     );
   }
 
+  @Override
+  public boolean isMainThread() {
+    return server.onMainThread();
+  }
+
+  @Override
+  public double getLoad() {
+    return server.averageTickTime() / 50.0;
+  }
+
   @Override
   public Logger getLogger() {
     return logger;
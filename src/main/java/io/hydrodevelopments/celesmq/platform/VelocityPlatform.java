@@ -12,6 +12,7 @@ public class VelocityPlatform implements Platform {
   private final Object plugin;
   private final ProxyServer proxyServer;
   private final Logger logger;
+  private final LoadMonitor loadMonitor = new LoadMonitor(this::runAsync, false);
 
   /**
    * Creates a new VelocityPlatform instance
@@ -34,10 +35,22 @@ public class VelocityPlatform implements Platform {
     task.run();
   }
 
+  @Override public boolean hasMainThread() {
+    return false;
+  }
+
   @Override public void runAsync(Runnable task) {
     proxyServer.getScheduler().buildTask(plugin, task).schedule();
   }
 
+  @Override public double getLoad() {
+    return loadMonitor.getLoad();
+  }
+
+  @Override public void stopLoadMonitor() {
+    loadMonitor.stop();
+  }
+
   @Override public PlatformType getType() {
     return PlatformType.VELOCITY;
   }